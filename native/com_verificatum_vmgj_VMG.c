@@ -31,6 +31,11 @@
 #include <gmp.h>
 #include "gmpmee.h"
 #include "convert.h"
+#include "fpowm.h"
+#include "crt.h"
+#include "prg.h"
+#include "sqrtm.h"
+#include "group.h"
 #include <stdio.h>
 /*
  * We use compiler flags that enforce that unused variables are
@@ -40,6 +45,16 @@
  */
 #define VMGJ_UNUSED(x) ((void)(x))
 
+/*
+ * Running product of simultaneous exponentiations modulo a common
+ * modulus.
+ */
+typedef struct
+{
+  mpz_t modulus;
+  mpz_t product;
+} vmgj_spowm_acc;
+
 #ifdef __cplusplus
 extern "C" {
 #endif
@@ -155,27 +170,37 @@ extern "C" {
   /*
    * Class:     com_verificatum_vmgj_VMG
    * Method:    fpowm_precomp
-   * Signature: ([B[BII)J
+   * Signature: ([B[BIIIZ)J
    */
   JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1precomp
   (JNIEnv *env, jclass clazz, jbyteArray javaBasis, jbyteArray javaModulus,
-   jint javaBlockWidth, jint javaExponentBitlen)
+   jint javaBlockWidth, jint javaExponentBitlen, jint javaThreads,
+   jboolean javaLazy)
   {
     mpz_t basis;
     mpz_t modulus;
-    gmpmee_fpowm_tab *tablePtr =
-      (gmpmee_fpowm_tab *)malloc(sizeof(gmpmee_fpowm_tab));
+    vmgj_fpowm_tab *tablePtr;
 
     VMGJ_UNUSED(clazz);
 
     jbyteArray_to_mpz_t(env, &basis, javaBasis);
     jbyteArray_to_mpz_t(env, &modulus, javaModulus);
 
-    gmpmee_fpowm_init_precomp(*tablePtr, basis, modulus,
-                              (int)javaBlockWidth, (int)javaExponentBitlen);
+    /* The table keeps its own copies of the basis and modulus, since
+       a lazy precomputation continues after we return. */
+    tablePtr = vmgj_fpowm_init(basis, modulus, (size_t)javaBlockWidth,
+                               (size_t)javaExponentBitlen,
+                               (size_t)javaThreads, javaLazy ? 1 : 0);
     mpz_clear(modulus);
     mpz_clear(basis);
 
+    if (tablePtr == NULL)
+      {
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate fixed-basis table!");
+      }
+
     return (jlong)(long)tablePtr;
   }
 
@@ -198,7 +223,7 @@ extern "C" {
     jbyteArray_to_mpz_t(env, &exponent, javaExponent);
     mpz_init(result);
 
-    gmpmee_fpowm(result, *(gmpmee_fpowm_tab *)(long)javaTablePtr, exponent);
+    vmgj_fpowm(result, (vmgj_fpowm_tab *)(long)javaTablePtr, exponent);
 
     /* Translate result back to jbyteArray (this also allocates the
        result array on the JVM heap). */
@@ -221,7 +246,51 @@ extern "C" {
   {
     VMGJ_UNUSED(env);
     VMGJ_UNUSED(clazz);
-    gmpmee_fpowm_clear(*(gmpmee_fpowm_tab *)(long)javaTablePtr);
+    vmgj_fpowm_clear((vmgj_fpowm_tab *)(long)javaTablePtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_size
+   * Signature: (II)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1size
+  (JNIEnv *env, jclass clazz, jint javaModulusBitlen, jint javaBlockWidth)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    return (jlong)vmgj_fpowm_size((size_t)javaModulusBitlen,
+                                  (size_t)javaBlockWidth);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_ready
+   * Signature: (J)Z
+   */
+  JNIEXPORT jboolean JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1ready
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    return vmgj_fpowm_ready((vmgj_fpowm_tab *)(long)javaTablePtr)
+      ? JNI_TRUE : JNI_FALSE;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_wait
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1wait
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_fpowm_wait((vmgj_fpowm_tab *)(long)javaTablePtr);
   }
 
 
@@ -250,6 +319,308 @@ extern "C" {
     return (jint)symbol;
   }
 
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    powm_vec
+   * Signature: ([BI[BI[BI)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_powm_1vec
+  (JNIEnv *env, jclass clazz, jbyteArray javaBases, jint javaBasesWidth,
+   jbyteArray javaExponents, jint javaExponentsWidth, jbyteArray javaModulus,
+   jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfBases;
+    size_t numberOfExponents;
+    mpz_t *bases;
+    mpz_t *exponents;
+    mpz_t modulus;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    /* Convert the packed vectors in one step each. */
+    bases = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaBases,
+                                      (size_t)javaBasesWidth);
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+
+    /* A single exponent is used for all bases. We store the results
+       in place of the bases. */
+    for (i = 0; i < numberOfBases; i++)
+      {
+        mpz_powm(bases[i], bases[i],
+                 exponents[numberOfExponents == 1 ? 0 : i], modulus);
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, bases, numberOfBases,
+                              (size_t)javaResultWidth);
+
+    mpz_clear(modulus);
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    spowm_vec
+   * Signature: ([BI[BI[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_spowm_1vec
+  (JNIEnv *env, jclass clazz, jbyteArray javaBases, jint javaBasesWidth,
+   jbyteArray javaExponents, jint javaExponentsWidth, jbyteArray javaModulus)
+  {
+    size_t numberOfBases;
+    mpz_t *bases;
+    mpz_t *exponents;
+    mpz_t modulus;
+    mpz_t result;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaBases,
+                                      (size_t)javaBasesWidth);
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaExponents,
+                                          (size_t)javaExponentsWidth);
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+
+    mpz_init(result);
+    gmpmee_spowm(result, bases, exponents, numberOfBases, modulus);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    mpz_clear(modulus);
+    gmpmee_array_clear_dealloc(exponents, numberOfBases);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_vec
+   * Signature: (J[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1vec
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jbyteArray javaExponents,
+   jint javaExponentsWidth, jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfExponents;
+    mpz_t *exponents;
+    mpz_t result;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* We store the results in place of the exponents. */
+    mpz_init(result);
+    for (i = 0; i < numberOfExponents; i++)
+      {
+        vmgj_fpowm(result, (vmgj_fpowm_tab *)(long)javaTablePtr,
+                   exponents[i]);
+        mpz_swap(exponents[i], result);
+      }
+    mpz_clear(result);
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, exponents, numberOfExponents,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_prg
+   * Signature: (J[BIII[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1prg
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jbyteArray javaSeed,
+   jint javaCount, jint javaExponentBitlen, jint javaResultWidth,
+   jbyteArray javaExponents)
+  {
+    size_t i;
+    size_t count = (size_t)javaCount;
+    size_t width = ((size_t)javaExponentBitlen + 7) / 8;
+    jsize seed_len;
+    jbyte *seed;
+    unsigned char *bytes;
+    int ok;
+    vmgj_prg prg;
+    mpz_t *exponents;
+    mpz_t result;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    bytes = (unsigned char *)malloc(count * width);
+    if (bytes == NULL && count > 0)
+      {
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate exponents!");
+        return NULL;
+      }
+
+    /* Expand the seed into the exponents. */
+    seed_len = (*env)->GetArrayLength(env, javaSeed);
+    seed = (*env)->GetByteArrayElements(env, javaSeed, NULL);
+    ok = vmgj_prg_init(&prg, (unsigned char *)seed, (size_t)seed_len);
+    (*env)->ReleaseByteArrayElements(env, javaSeed, seed, JNI_ABORT);
+    if (!ok)
+      {
+        free(bytes);
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate generator!");
+        return NULL;
+      }
+    vmgj_prg_integers(&prg, bytes, count, (size_t)javaExponentBitlen);
+    vmgj_prg_clear(&prg);
+
+    if (javaExponents != NULL)
+      {
+        (*env)->SetByteArrayRegion(env, javaExponents, 0,
+                                   (jsize)(count * width), (jbyte *)bytes);
+      }
+
+    exponents = gmpmee_array_alloc(count);
+    bytes_to_mpz_t_array(exponents, (jbyte *)bytes, count, width);
+    free(bytes);
+
+    /* We store the results in place of the exponents. */
+    mpz_init(result);
+    for (i = 0; i < count; i++)
+      {
+        vmgj_fpowm(result, (vmgj_fpowm_tab *)(long)javaTablePtr,
+                   exponents[i]);
+        mpz_swap(exponents[i], result);
+      }
+    mpz_clear(result);
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, exponents, count,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, count);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    legendre_vec
+   * Signature: ([BI[B)[I
+   */
+  JNIEXPORT jintArray JNICALL Java_com_verificatum_vmgj_VMG_legendre_1vec
+  (JNIEnv *env, jclass clazz, jbyteArray javaValues, jint javaWidth,
+   jbyteArray javaOddPrime)
+  {
+    size_t i;
+    size_t numberOfValues;
+    mpz_t *values;
+    mpz_t oddPrime;
+    jint *symbols;
+
+    jintArray javaSymbols;
+
+    VMGJ_UNUSED(clazz);
+
+    values = jbyteArray_to_mpz_t_array(env, &numberOfValues, javaValues,
+                                       (size_t)javaWidth);
+    jbyteArray_to_mpz_t(env, &oddPrime, javaOddPrime);
+
+    javaSymbols = (*env)->NewIntArray(env, (jsize)numberOfValues);
+    symbols = (*env)->GetIntArrayElements(env, javaSymbols, NULL);
+    for (i = 0; i < numberOfValues; i++)
+      {
+        symbols[i] = (jint)mpz_legendre(values[i], oddPrime);
+      }
+    (*env)->ReleaseIntArrayElements(env, javaSymbols, symbols, 0);
+
+    mpz_clear(oddPrime);
+    gmpmee_array_clear_dealloc(values, numberOfValues);
+
+    return javaSymbols;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    sqrtm_vec
+   * Signature: ([BI[BI[I)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_sqrtm_1vec
+  (JNIEnv *env, jclass clazz, jbyteArray javaValues, jint javaWidth,
+   jbyteArray javaOddPrime, jint javaResultWidth, jintArray javaSymbols)
+  {
+    size_t i;
+    size_t numberOfValues;
+    mpz_t *values;
+    mpz_t oddPrime;
+    vmgj_sqrtm_ctx ctx;
+    jint *symbols;
+    int prime;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    values = jbyteArray_to_mpz_t_array(env, &numberOfValues, javaValues,
+                                       (size_t)javaWidth);
+    jbyteArray_to_mpz_t(env, &oddPrime, javaOddPrime);
+
+    /* We store the roots in place of the values. */
+    prime = vmgj_sqrtm_init(&ctx, oddPrime);
+    symbols = (*env)->GetIntArrayElements(env, javaSymbols, NULL);
+    for (i = 0; prime && i < numberOfValues; i++)
+      {
+        symbols[i] = (jint)vmgj_sqrtm(values[i], values[i], &ctx);
+        prime = symbols[i] != VMGJ_SQRTM_NOT_PRIME;
+      }
+    (*env)->ReleaseIntArrayElements(env, javaSymbols, symbols, 0);
+    vmgj_sqrtm_clear(&ctx);
+
+    if (!prime)
+      {
+        mpz_clear(oddPrime);
+        gmpmee_array_clear_dealloc(values, numberOfValues);
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env,
+                                           "java/lang/"
+                                           "IllegalArgumentException"),
+                         "Modulus is not an odd prime!");
+        return NULL;
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, values, numberOfValues,
+                              (size_t)javaResultWidth);
+
+    mpz_clear(oddPrime);
+    gmpmee_array_clear_dealloc(values, numberOfValues);
+
+    return javaResults;
+  }
+
   /*
    * Class:     com_verificatum_vmgj_VMG
    * Method:    millerrabin_init
@@ -467,6 +838,861 @@ extern "C" {
     return javaResult;
   }
 
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    powm_buf
+   * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I[BLjava/nio/ByteBuffer;II)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_powm_1buf
+  (JNIEnv *env, jclass clazz, jobject javaBases, jint javaBasesWidth,
+   jobject javaExponents, jint javaExponentsWidth, jbyteArray javaModulus,
+   jobject javaResults, jint javaResultWidth, jint javaCount)
+  {
+    size_t i;
+    size_t count = (size_t)javaCount;
+    mpz_t *bases;
+    mpz_t *exponents;
+    mpz_t modulus;
+
+    VMGJ_UNUSED(clazz);
+
+    /* The buffers are direct, so no copying takes place. */
+    bases = gmpmee_array_alloc(count);
+    bytes_to_mpz_t_array(bases,
+                         (jbyte *)(*env)->GetDirectBufferAddress(env, javaBases),
+                         count, (size_t)javaBasesWidth);
+    exponents = gmpmee_array_alloc(count);
+    bytes_to_mpz_t_array(exponents,
+                         (jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaExponents),
+                         count, (size_t)javaExponentsWidth);
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+
+    /* We store the results in place of the bases. */
+    for (i = 0; i < count; i++)
+      {
+        mpz_powm(bases[i], bases[i], exponents[i], modulus);
+      }
+
+    mpz_t_array_to_bytes((jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaResults),
+                         count, (size_t)javaResultWidth, bases);
+
+    mpz_clear(modulus);
+    gmpmee_array_clear_dealloc(exponents, count);
+    gmpmee_array_clear_dealloc(bases, count);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_buf
+   * Signature: (JLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;II)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1buf
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jobject javaExponents,
+   jint javaExponentsWidth, jobject javaResults, jint javaResultWidth,
+   jint javaCount)
+  {
+    size_t i;
+    size_t count = (size_t)javaCount;
+    mpz_t *exponents;
+    mpz_t result;
+
+    VMGJ_UNUSED(clazz);
+
+    exponents = gmpmee_array_alloc(count);
+    bytes_to_mpz_t_array(exponents,
+                         (jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaExponents),
+                         count, (size_t)javaExponentsWidth);
+
+    /* We store the results in place of the exponents. */
+    mpz_init(result);
+    for (i = 0; i < count; i++)
+      {
+        vmgj_fpowm(result, (vmgj_fpowm_tab *)(long)javaTablePtr,
+                   exponents[i]);
+        mpz_swap(exponents[i], result);
+      }
+    mpz_clear(result);
+
+    mpz_t_array_to_bytes((jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaResults),
+                         count, (size_t)javaResultWidth, exponents);
+
+    gmpmee_array_clear_dealloc(exponents, count);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    mulm_buf
+   * Signature: (Ljava/nio/ByteBuffer;I[B[BLjava/nio/ByteBuffer;II)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_mulm_1buf
+  (JNIEnv *env, jclass clazz, jobject javaValues, jint javaWidth,
+   jbyteArray javaFactor, jbyteArray javaModulus, jobject javaResults,
+   jint javaResultWidth, jint javaCount)
+  {
+    size_t i;
+    size_t count = (size_t)javaCount;
+    mpz_t *values;
+    mpz_t factor;
+    mpz_t modulus;
+
+    VMGJ_UNUSED(clazz);
+
+    values = gmpmee_array_alloc(count);
+    bytes_to_mpz_t_array(values,
+                         (jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaValues),
+                         count, (size_t)javaWidth);
+    jbyteArray_to_mpz_t(env, &factor, javaFactor);
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+
+    for (i = 0; i < count; i++)
+      {
+        mpz_mul(values[i], values[i], factor);
+        mpz_mod(values[i], values[i], modulus);
+      }
+
+    mpz_t_array_to_bytes((jbyte *)(*env)->GetDirectBufferAddress(env,
+                                                                 javaResults),
+                         count, (size_t)javaResultWidth, values);
+
+    mpz_clear(modulus);
+    mpz_clear(factor);
+    gmpmee_array_clear_dealloc(values, count);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_init
+   * Signature: ([[B[I)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_crt_1init
+  (JNIEnv *env, jclass clazz, jobjectArray javaPrimes, jintArray javaPowers)
+  {
+    jsize i;
+    jsize len = (*env)->GetArrayLength(env, javaPrimes);
+    mpz_t *primes;
+    unsigned long *powers;
+    jint *cPowers;
+    jbyteArray javaPrime;
+    vmgj_crt *crtPtr;
+
+    VMGJ_UNUSED(clazz);
+
+    primes = gmpmee_array_alloc(len);
+    for (i = 0; i < len; i++)
+      {
+        javaPrime =
+          (jbyteArray)(*env)->GetObjectArrayElement(env, javaPrimes, i);
+        jbyteArray_to_mpz_t(env, &(primes[i]), javaPrime);
+      }
+
+    powers = (unsigned long *)malloc(len * sizeof(unsigned long));
+    cPowers = (*env)->GetIntArrayElements(env, javaPowers, NULL);
+    for (i = 0; i < len; i++)
+      {
+        powers[i] = (unsigned long)cPowers[i];
+      }
+    (*env)->ReleaseIntArrayElements(env, javaPowers, cPowers, JNI_ABORT);
+
+    crtPtr = vmgj_crt_init(primes, powers, (size_t)len);
+
+    free(powers);
+    gmpmee_array_clear_dealloc(primes, len);
+
+    return (jlong)(long)crtPtr;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_powm
+   * Signature: (J[B[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_crt_1powm
+  (JNIEnv *env, jclass clazz, jlong javaCrtPtr, jbyteArray javaBasis,
+   jbyteArray javaExponent)
+  {
+    mpz_t basis;
+    mpz_t exponent;
+    mpz_t result;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &basis, javaBasis);
+    jbyteArray_to_mpz_t(env, &exponent, javaExponent);
+    mpz_init(result);
+
+    vmgj_crt_powm(result, (vmgj_crt *)(long)javaCrtPtr, basis, exponent);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    mpz_clear(exponent);
+    mpz_clear(basis);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_powm_vec
+   * Signature: (J[BI[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_crt_1powm_1vec
+  (JNIEnv *env, jclass clazz, jlong javaCrtPtr, jbyteArray javaBases,
+   jint javaBasesWidth, jbyteArray javaExponents, jint javaExponentsWidth,
+   jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfBases;
+    size_t numberOfExponents;
+    mpz_t *bases;
+    mpz_t *exponents;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaBases,
+                                      (size_t)javaBasesWidth);
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* A single exponent is used for all bases. We store the results
+       in place of the bases. */
+    for (i = 0; i < numberOfBases; i++)
+      {
+        vmgj_crt_powm(bases[i], (vmgj_crt *)(long)javaCrtPtr, bases[i],
+                      exponents[numberOfExponents == 1 ? 0 : i]);
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, bases, numberOfBases,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_clear
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_crt_1clear
+  (JNIEnv *env, jclass clazz, jlong javaCrtPtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_crt_clear((vmgj_crt *)(long)javaCrtPtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_fpowm_precomp
+   * Signature: (J[BII)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_crt_1fpowm_1precomp
+  (JNIEnv *env, jclass clazz, jlong javaCrtPtr, jbyteArray javaBasis,
+   jint javaBlockWidth, jint javaThreads)
+  {
+    mpz_t basis;
+    vmgj_crt_fpowm_tab *tablePtr;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &basis, javaBasis);
+
+    tablePtr = vmgj_crt_fpowm_init((vmgj_crt *)(long)javaCrtPtr, basis,
+                                   (size_t)javaBlockWidth,
+                                   (size_t)javaThreads);
+    mpz_clear(basis);
+
+    if (tablePtr == NULL)
+      {
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate fixed-basis table!");
+      }
+
+    return (jlong)(long)tablePtr;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_fpowm
+   * Signature: (J[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_crt_1fpowm
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jbyteArray javaExponent)
+  {
+    mpz_t exponent;
+    mpz_t result;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &exponent, javaExponent);
+    mpz_init(result);
+
+    vmgj_crt_fpowm(result, (vmgj_crt_fpowm_tab *)(long)javaTablePtr,
+                   exponent);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    mpz_clear(exponent);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_fpowm_vec
+   * Signature: (J[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_crt_1fpowm_1vec
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jbyteArray javaExponents,
+   jint javaExponentsWidth, jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfExponents;
+    mpz_t *exponents;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* We store the results in place of the exponents. */
+    for (i = 0; i < numberOfExponents; i++)
+      {
+        vmgj_crt_fpowm(exponents[i], (vmgj_crt_fpowm_tab *)(long)javaTablePtr,
+                       exponents[i]);
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, exponents, numberOfExponents,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    crt_fpowm_clear
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_crt_1fpowm_1clear
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_crt_fpowm_clear((vmgj_crt_fpowm_tab *)(long)javaTablePtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_multi_precomp
+   * Signature: ([[B[BIII)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1multi_1precomp
+  (JNIEnv *env, jclass clazz, jobjectArray javaBases, jbyteArray javaModulus,
+   jint javaBlockWidth, jint javaExponentBitlen, jint javaThreads)
+  {
+    jsize i;
+    jsize len = (*env)->GetArrayLength(env, javaBases);
+    mpz_t *bases;
+    mpz_t modulus;
+    jbyteArray javaBasis;
+    vmgj_fpowm_multi_tab *tablePtr;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = gmpmee_array_alloc(len);
+    for (i = 0; i < len; i++)
+      {
+        javaBasis =
+          (jbyteArray)(*env)->GetObjectArrayElement(env, javaBases, i);
+        jbyteArray_to_mpz_t(env, &(bases[i]), javaBasis);
+      }
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+
+    tablePtr = vmgj_fpowm_multi_init(bases, (size_t)len, modulus,
+                                     (size_t)javaBlockWidth,
+                                     (size_t)javaExponentBitlen,
+                                     (size_t)javaThreads);
+    mpz_clear(modulus);
+    gmpmee_array_clear_dealloc(bases, len);
+
+    if (tablePtr == NULL)
+      {
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate fixed-basis tables!");
+      }
+
+    return (jlong)(long)tablePtr;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_multi_vec
+   * Signature: (J[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1multi_1vec
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr, jbyteArray javaExponents,
+   jint javaExponentsWidth, jint javaResultWidth)
+  {
+    size_t i;
+    size_t j;
+    size_t numberOfExponents;
+    mpz_t *exponents;
+    mpz_t *powers;
+    mpz_t *results;
+    vmgj_fpowm_multi_tab *tablePtr =
+      (vmgj_fpowm_multi_tab *)(long)javaTablePtr;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+    powers = gmpmee_array_alloc_init(tablePtr->len);
+    results = gmpmee_array_alloc_init(tablePtr->len * numberOfExponents);
+
+    /* The powers of all bases to a given exponent are computed
+       together, and stored ordered by basis. */
+    for (i = 0; i < numberOfExponents; i++)
+      {
+        vmgj_fpowm_multi(powers, tablePtr, exponents[i]);
+        for (j = 0; j < tablePtr->len; j++)
+          {
+            mpz_swap(results[j * numberOfExponents + i], powers[j]);
+          }
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, results,
+                              tablePtr->len * numberOfExponents,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(results, tablePtr->len * numberOfExponents);
+    gmpmee_array_clear_dealloc(powers, tablePtr->len);
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    fpowm_multi_clear
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_fpowm_1multi_1clear
+  (JNIEnv *env, jclass clazz, jlong javaTablePtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_fpowm_multi_clear((vmgj_fpowm_multi_tab *)(long)javaTablePtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_init
+   * Signature: ([B[B)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_group_1init
+  (JNIEnv *env, jclass clazz, jbyteArray javaModulus, jbyteArray javaOrder)
+  {
+    mpz_t modulus;
+    mpz_t order;
+    vmgj_group *groupPtr;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &modulus, javaModulus);
+    jbyteArray_to_mpz_t(env, &order, javaOrder);
+
+    groupPtr = vmgj_group_init(modulus, order);
+
+    mpz_clear(order);
+    mpz_clear(modulus);
+
+    if (groupPtr == NULL)
+      {
+        (*env)->ThrowNew(env,
+                         (*env)->FindClass(env, "java/lang/OutOfMemoryError"),
+                         "Unable to allocate group context!");
+      }
+
+    return (jlong)(long)groupPtr;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_powm
+   * Signature: (J[B[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_group_1powm
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr, jbyteArray javaBasis,
+   jbyteArray javaExponent)
+  {
+    mpz_t basis;
+    mpz_t exponent;
+    mpz_t result;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &basis, javaBasis);
+    jbyteArray_to_mpz_t(env, &exponent, javaExponent);
+    mpz_init(result);
+
+    vmgj_group_powm(result, (vmgj_group *)(long)javaGroupPtr, basis,
+                    exponent);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    mpz_clear(exponent);
+    mpz_clear(basis);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_powm_vec
+   * Signature: (J[BI[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_group_1powm_1vec
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr, jbyteArray javaBases,
+   jint javaBasesWidth, jbyteArray javaExponents, jint javaExponentsWidth,
+   jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfBases;
+    size_t numberOfExponents;
+    mpz_t *bases;
+    mpz_t *exponents;
+    vmgj_group *groupPtr = (vmgj_group *)(long)javaGroupPtr;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaBases,
+                                      (size_t)javaBasesWidth);
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* A single exponent is used for all bases. We store the results
+       in place of the bases. */
+    for (i = 0; i < numberOfBases; i++)
+      {
+        vmgj_group_powm(bases[i], groupPtr, bases[i],
+                        exponents[numberOfExponents == 1 ? 0 : i]);
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, bases, numberOfBases,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_spowm
+   * Signature: (J[[B[[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_group_1spowm
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr, jobjectArray javaBases,
+   jobjectArray javaExponents)
+  {
+    jsize i;
+    jsize numberOfBases = (*env)->GetArrayLength(env, javaBases);
+    mpz_t *bases;
+    mpz_t *exponents;
+    mpz_t result;
+    jbyteArray javaElement;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = gmpmee_array_alloc(numberOfBases);
+    exponents = gmpmee_array_alloc(numberOfBases);
+    for (i = 0; i < numberOfBases; i++)
+      {
+        javaElement =
+          (jbyteArray)(*env)->GetObjectArrayElement(env, javaBases, i);
+        jbyteArray_to_mpz_t(env, &(bases[i]), javaElement);
+        javaElement =
+          (jbyteArray)(*env)->GetObjectArrayElement(env, javaExponents, i);
+        jbyteArray_to_mpz_t(env, &(exponents[i]), javaElement);
+      }
+
+    mpz_init(result);
+    vmgj_group_spowm(result, (vmgj_group *)(long)javaGroupPtr, bases,
+                     exponents, (size_t)numberOfBases);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    gmpmee_array_clear_dealloc(exponents, numberOfBases);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_fpowm
+   * Signature: (JJ[B)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_group_1fpowm
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr, jlong javaTablePtr,
+   jbyteArray javaExponent)
+  {
+    mpz_t exponent;
+    mpz_t result;
+
+    jbyteArray javaResult;
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &exponent, javaExponent);
+    mpz_init(result);
+
+    vmgj_group_fpowm(result, (vmgj_group *)(long)javaGroupPtr,
+                     (vmgj_fpowm_tab *)(long)javaTablePtr, exponent);
+
+    mpz_t_to_jbyteArray(env, &javaResult, result);
+
+    mpz_clear(result);
+    mpz_clear(exponent);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_fpowm_vec
+   * Signature: (JJ[BII)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_group_1fpowm_1vec
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr, jlong javaTablePtr,
+   jbyteArray javaExponents, jint javaExponentsWidth, jint javaResultWidth)
+  {
+    size_t i;
+    size_t numberOfExponents;
+    mpz_t *exponents;
+
+    jbyteArray javaResults;
+
+    VMGJ_UNUSED(clazz);
+
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfExponents,
+                                          javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* We store the results in place of the exponents. */
+    for (i = 0; i < numberOfExponents; i++)
+      {
+        vmgj_group_fpowm(exponents[i], (vmgj_group *)(long)javaGroupPtr,
+                         (vmgj_fpowm_tab *)(long)javaTablePtr,
+                         exponents[i]);
+      }
+
+    mpz_t_array_to_jbyteArray(env, &javaResults, exponents, numberOfExponents,
+                              (size_t)javaResultWidth);
+
+    gmpmee_array_clear_dealloc(exponents, numberOfExponents);
+
+    return javaResults;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    group_clear
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_group_1clear
+  (JNIEnv *env, jclass clazz, jlong javaGroupPtr)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_group_clear((vmgj_group *)(long)javaGroupPtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    spowm_acc_init
+   * Signature: ([B)J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_spowm_1acc_1init
+  (JNIEnv *env, jclass clazz, jbyteArray javaModulus)
+  {
+    vmgj_spowm_acc *accPtr =
+      (vmgj_spowm_acc *)malloc(sizeof(vmgj_spowm_acc));
+
+    VMGJ_UNUSED(clazz);
+
+    jbyteArray_to_mpz_t(env, &(accPtr->modulus), javaModulus);
+    mpz_init_set_ui(accPtr->product, 1);
+
+    return (jlong)(long)accPtr;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    spowm_acc_update
+   * Signature: (J[BI[BI)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_spowm_1acc_1update
+  (JNIEnv *env, jclass clazz, jlong javaAccPtr, jbyteArray javaBases,
+   jint javaBasesWidth, jbyteArray javaExponents, jint javaExponentsWidth)
+  {
+    size_t numberOfBases;
+    mpz_t *bases;
+    mpz_t *exponents;
+    mpz_t result;
+    vmgj_spowm_acc *accPtr = (vmgj_spowm_acc *)(long)javaAccPtr;
+
+    VMGJ_UNUSED(clazz);
+
+    bases = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaBases,
+                                      (size_t)javaBasesWidth);
+    exponents = jbyteArray_to_mpz_t_array(env, &numberOfBases, javaExponents,
+                                          (size_t)javaExponentsWidth);
+
+    /* Fold the simultaneous exponentiation of the chunk into the
+       running product. Only the chunk is ever held in memory. */
+    if (numberOfBases > 0)
+      {
+        mpz_init(result);
+        gmpmee_spowm(result, bases, exponents, numberOfBases,
+                     accPtr->modulus);
+        mpz_mul(accPtr->product, accPtr->product, result);
+        mpz_mod(accPtr->product, accPtr->product, accPtr->modulus);
+        mpz_clear(result);
+      }
+
+    gmpmee_array_clear_dealloc(exponents, numberOfBases);
+    gmpmee_array_clear_dealloc(bases, numberOfBases);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    spowm_acc_result
+   * Signature: (J)[B
+   */
+  JNIEXPORT jbyteArray JNICALL Java_com_verificatum_vmgj_VMG_spowm_1acc_1result
+  (JNIEnv *env, jclass clazz, jlong javaAccPtr)
+  {
+    jbyteArray javaResult;
+    vmgj_spowm_acc *accPtr = (vmgj_spowm_acc *)(long)javaAccPtr;
+
+    VMGJ_UNUSED(clazz);
+
+    /* The product is one before any update, which must be reduced if
+       the modulus is one. */
+    mpz_mod(accPtr->product, accPtr->product, accPtr->modulus);
+    mpz_t_to_jbyteArray(env, &javaResult, accPtr->product);
+
+    return javaResult;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    spowm_acc_clear
+   * Signature: (J)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_spowm_1acc_1clear
+  (JNIEnv *env, jclass clazz, jlong javaAccPtr)
+  {
+    vmgj_spowm_acc *accPtr = (vmgj_spowm_acc *)(long)javaAccPtr;
+
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+
+    mpz_clear(accPtr->product);
+    mpz_clear(accPtr->modulus);
+    free(accPtr);
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    timing
+   * Signature: (Z)V
+   */
+  JNIEXPORT void JNICALL Java_com_verificatum_vmgj_VMG_timing
+  (JNIEnv *env, jclass clazz, jboolean javaEnabled)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    vmgj_timing = javaEnabled ? 1 : 0;
+  }
+
+
+  /*
+   * Class:     com_verificatum_vmgj_VMG
+   * Method:    conversion_time
+   * Signature: ()J
+   */
+  JNIEXPORT jlong JNICALL Java_com_verificatum_vmgj_VMG_conversion_1time
+  (JNIEnv *env, jclass clazz)
+  {
+    VMGJ_UNUSED(env);
+    VMGJ_UNUSED(clazz);
+    return (jlong)vmgj_timing_reset();
+  }
+
 #ifdef __cplusplus
 }
 #endif
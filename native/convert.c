@@ -25,9 +25,48 @@
  * SOFTWARE.
  */
 
+#include <limits.h>
+#include <string.h>
+#include <time.h>
 #include <gmp.h>
+#include "gmpmee.h"
 #include "convert.h"
 
+int vmgj_timing = 0;
+
+/* Accumulated conversion time of the current thread. */
+static __thread long vmgj_conversion_nanos = 0;
+
+long
+vmgj_timing_start(void)
+{
+  struct timespec ts;
+
+  if (!vmgj_timing)
+    {
+      return 0;
+    }
+  clock_gettime(CLOCK_MONOTONIC, &ts);
+  return (long)ts.tv_sec * 1000000000L + ts.tv_nsec;
+}
+
+void
+vmgj_timing_stop(long start)
+{
+  if (vmgj_timing && start != 0)
+    {
+      vmgj_conversion_nanos += vmgj_timing_start() - start;
+    }
+}
+
+long
+vmgj_timing_reset(void)
+{
+  long nanos = vmgj_conversion_nanos;
+  vmgj_conversion_nanos = 0;
+  return nanos;
+}
+
 void
 jbyteArray_to_mpz_t(JNIEnv* env, mpz_t* gmpValue, jbyteArray javaBytes)
 {
@@ -35,6 +74,9 @@ jbyteArray_to_mpz_t(JNIEnv* env, mpz_t* gmpValue, jbyteArray javaBytes)
   jsize byte_len;
   jbyte *cBytes;
   mpz_t tmp;
+  long start;
+
+  start = vmgj_timing_start();
 
   /* Find length in bytes of the jbyteArray. */
   byte_len = (*env)->GetArrayLength(env, javaBytes);
@@ -71,6 +113,8 @@ jbyteArray_to_mpz_t(JNIEnv* env, mpz_t* gmpValue, jbyteArray javaBytes)
      do not require that the jbyteArray is copied back into JVM
      memory, even if the JVM has a separate native memory space. */
   (*env)->ReleaseByteArrayElements(env, javaBytes, cBytes, JNI_ABORT);
+
+  vmgj_timing_stop(start);
 }
 
 void mpz_t_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes, mpz_t gmpValue)
@@ -79,6 +123,9 @@ void mpz_t_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes, mpz_t gmpValue)
   size_t byte_len;
   jbyte* cBytes;
   mpz_t tmp;
+  long start;
+
+  start = vmgj_timing_start();
 
   /* Find length in bytes of the GMP mpz_t element. We add an
      additional leading byte where the sign of the integer is
@@ -130,4 +177,114 @@ void mpz_t_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes, mpz_t gmpValue)
   /* Release our handle to the java bytes. Force "copy" of the bytes
      into JVM memory space only if needed. */
   (*env)->ReleaseByteArrayElements(env, *javaBytes, cBytes, 0);
+
+  vmgj_timing_stop(start);
+}
+
+void
+bytes_to_mpz_t_array(mpz_t *gmpValues, const jbyte *bytes,
+                     size_t count, size_t width)
+{
+  size_t i;
+
+  for (i = 0; i < count; i++)
+    {
+      mpz_init(gmpValues[i]);
+      mpz_import(gmpValues[i],
+                 width,                /* Number of words */
+                 1,                    /* Most significant word first */
+                 1,                    /* Number of bytes in each word */
+                 1,                    /* Most signif. byte of each word first */
+                 0,                    /* No. ignored leading bits of words */
+                 (void*)&(bytes[i * width])); /* Source of the bytes */
+    }
+}
+
+void
+mpz_t_array_to_bytes(jbyte *bytes, size_t count, size_t width,
+                     mpz_t *gmpValues)
+{
+  size_t i;
+  size_t byte_len;
+
+  for (i = 0; i < count; i++)
+    {
+      /* Number of bytes of the integer, which is zero for zero. */
+      byte_len = (mpz_sizeinbase(gmpValues[i], 2) + 7) / 8;
+      if (mpz_sgn(gmpValues[i]) == 0)
+        {
+          byte_len = 0;
+        }
+
+      /* Pad with leading zeros and store the integer right-aligned. */
+      memset(&(bytes[i * width]), 0, width - byte_len);
+      mpz_export((void*)&(bytes[i * width + width - byte_len]),
+                 NULL,
+                 1,                 /* Most significant word first */
+                 1,                 /* Number of bytes in each word (is one) */
+                 1,                 /* Most signif. byte of each word first */
+                 0,                 /* No. ignored leading bits of words */
+                 gmpValues[i]);     /* Source of the bytes */
+    }
+}
+
+mpz_t *
+jbyteArray_to_mpz_t_array(JNIEnv* env, size_t *count, jbyteArray javaBytes,
+                          size_t width)
+{
+  mpz_t *gmpValues;
+  jbyte *cBytes;
+  long start;
+
+  start = vmgj_timing_start();
+
+  *count = (size_t)(*env)->GetArrayLength(env, javaBytes) / width;
+  gmpValues = gmpmee_array_alloc(*count);
+
+  /* The conversion only reads the bytes, so we may use a critical
+     region to avoid copying the complete vector. */
+  cBytes = (jbyte *)(*env)->GetPrimitiveArrayCritical(env, javaBytes, NULL);
+  bytes_to_mpz_t_array(gmpValues, cBytes, *count, width);
+  (*env)->ReleasePrimitiveArrayCritical(env, javaBytes, cBytes, JNI_ABORT);
+
+  vmgj_timing_stop(start);
+
+  return gmpValues;
+}
+
+void
+mpz_t_array_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes,
+                          mpz_t *gmpValues, size_t count, size_t width)
+{
+  jbyte *cBytes;
+  long start;
+
+  start = vmgj_timing_start();
+
+  /* The packed vector must fit in a single java byte array. */
+  if (width != 0 && count > (size_t)INT_MAX / width)
+    {
+      *javaBytes = NULL;
+      (*env)->ThrowNew(env,
+                       (*env)->FindClass(env,
+                                         "java/lang/IllegalArgumentException"),
+                       "Packed result does not fit in a byte array!");
+      vmgj_timing_stop(start);
+      return;
+    }
+
+  /* Allocate a new java byte array in JVM space. If this fails, then
+     an OutOfMemoryError is already pending. */
+  *javaBytes = (*env)->NewByteArray(env, (jsize)(count * width));
+  if (*javaBytes == NULL)
+    {
+      vmgj_timing_stop(start);
+      return;
+    }
+
+  cBytes = (jbyte *)(*env)->GetPrimitiveArrayCritical(env, *javaBytes, NULL);
+  mpz_t_array_to_bytes(cBytes, count, width, gmpValues);
+  (*env)->ReleasePrimitiveArrayCritical(env, *javaBytes, cBytes, 0);
+
+  vmgj_timing_stop(start);
 }
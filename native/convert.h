@@ -33,6 +33,34 @@
 extern "C" {
 #endif
 
+/*
+ * Decides if the time spent in the conversion routines below is
+ * measured. This is set from Java, since measuring the time has a
+ * small cost.
+ */
+extern int vmgj_timing;
+
+/*
+ * Returns the current time in nanoseconds if vmgj_timing is set, and
+ * zero otherwise.
+ */
+long
+vmgj_timing_start(void);
+
+/*
+ * Adds the time elapsed since the given start time to the conversion
+ * time of the current thread if vmgj_timing is set.
+ */
+void
+vmgj_timing_stop(long start);
+
+/*
+ * Returns the conversion time of the current thread in nanoseconds
+ * accumulated since the previous call and resets it.
+ */
+long
+vmgj_timing_reset(void);
+
 /*
  * Translates the representation of a positive integer given as a
  * jbyteArray in two's complement representation into its
@@ -51,6 +79,47 @@ jbyteArray_to_mpz_t(JNIEnv* env, mpz_t* gmpValue, jbyteArray javaBytes);
 void
 mpz_t_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes, mpz_t gmpValue);
 
+/*
+ * Translates count unsigned integers stored consecutively in
+ * big-endian byte order using width bytes each into an array of GMP
+ * mpz_t elements. It initializes the elements, so they should be
+ * uninitialized before the call.
+ */
+void
+bytes_to_mpz_t_array(mpz_t *gmpValues, const jbyte *bytes,
+                     size_t count, size_t width);
+
+/*
+ * Translates an array of count non-negative GMP mpz_t elements into
+ * unsigned big-endian byte order using width bytes each, stored
+ * consecutively. Each element must fit in width bytes.
+ */
+void
+mpz_t_array_to_bytes(jbyte *bytes, size_t count, size_t width,
+                     mpz_t *gmpValues);
+
+/*
+ * Translates a packed vector given as a jbyteArray, i.e., integers
+ * stored as by mpz_t_array_to_bytes, into an array of GMP mpz_t
+ * elements, which is allocated and initialized, and returns the
+ * array. The number of elements is stored in count.
+ */
+mpz_t *
+jbyteArray_to_mpz_t_array(JNIEnv* env, size_t *count, jbyteArray javaBytes,
+                          size_t width);
+
+/*
+ * Translates an array of GMP mpz_t elements into a packed vector
+ * given as a jbyteArray, i.e., integers stored as by
+ * mpz_t_array_to_bytes. It allocates a jbyteArray in JVM memory
+ * space, so it should be uninitialized before the call. If the
+ * packed vector does not fit in a jbyteArray, or if the allocation
+ * fails, then javaBytes is set to NULL and an exception is pending.
+ */
+void
+mpz_t_array_to_jbyteArray(JNIEnv* env, jbyteArray* javaBytes,
+                          mpz_t *gmpValues, size_t count, size_t width);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,235 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stdlib.h>
+#include <gmp.h>
+#include "gmpmee.h"
+#include "crt.h"
+
+vmgj_crt *
+vmgj_crt_init(mpz_t *primes, unsigned long *powers, size_t len)
+{
+  size_t i;
+  vmgj_crt *crt = (vmgj_crt *)malloc(sizeof(vmgj_crt));
+
+  crt->len = len;
+  mpz_init_set_ui(crt->modulus, 1);
+  crt->primes = gmpmee_array_alloc_init(len);
+  crt->moduli = gmpmee_array_alloc_init(len);
+  crt->phis = gmpmee_array_alloc_init(len);
+  crt->prefixes = gmpmee_array_alloc_init(len);
+  crt->inverses = gmpmee_array_alloc_init(len);
+
+  for (i = 0; i < len; i++)
+    {
+      mpz_set(crt->primes[i], primes[i]);
+
+      /* moduli[i] = p^k and phis[i] = p^(k - 1) * (p - 1). */
+      mpz_pow_ui(crt->moduli[i], primes[i], powers[i]);
+      mpz_divexact(crt->phis[i], crt->moduli[i], primes[i]);
+      mpz_sub_ui(crt->prefixes[i], primes[i], 1);
+      mpz_mul(crt->phis[i], crt->phis[i], crt->prefixes[i]);
+
+      /* The prefix is the product of the previous moduli. */
+      mpz_set(crt->prefixes[i], crt->modulus);
+      if (!mpz_invert(crt->inverses[i], crt->prefixes[i], crt->moduli[i]))
+        {
+          vmgj_crt_clear(crt);
+          return NULL;
+        }
+      mpz_mul(crt->modulus, crt->modulus, crt->moduli[i]);
+    }
+  return crt;
+}
+
+void
+vmgj_crt_combine(mpz_t rop, vmgj_crt *crt, mpz_t *residues)
+{
+  size_t i;
+  mpz_t result;
+  mpz_t tmp;
+
+  mpz_init_set(result, residues[0]);
+  mpz_init(tmp);
+
+  /* Garner's algorithm, i.e., result is correct modulo the product
+     of the first i moduli before the ith iteration. */
+  for (i = 1; i < crt->len; i++)
+    {
+      mpz_sub(tmp, residues[i], result);
+      mpz_mul(tmp, tmp, crt->inverses[i]);
+      mpz_mod(tmp, tmp, crt->moduli[i]);
+      mpz_mul(tmp, tmp, crt->prefixes[i]);
+      mpz_add(result, result, tmp);
+    }
+  mpz_mod(result, result, crt->modulus);
+
+  mpz_swap(rop, result);
+  mpz_clear(tmp);
+  mpz_clear(result);
+}
+
+/*
+ * Returns non-zero if the basis is invertible modulo the ith
+ * component of the context.
+ */
+static int
+vmgj_crt_invertible(vmgj_crt *crt, size_t i, mpz_t basis)
+{
+  int invertible;
+  mpz_t tmp;
+
+  mpz_init(tmp);
+  mpz_mod(tmp, basis, crt->primes[i]);
+  invertible = mpz_sgn(tmp) != 0;
+  mpz_clear(tmp);
+
+  return invertible;
+}
+
+void
+vmgj_crt_powm(mpz_t rop, vmgj_crt *crt, mpz_t basis, mpz_t exponent)
+{
+  size_t i;
+  mpz_t *residues;
+  mpz_t reduced;
+
+  residues = gmpmee_array_alloc_init(crt->len);
+  mpz_init(reduced);
+
+  for (i = 0; i < crt->len; i++)
+    {
+      mpz_mod(residues[i], basis, crt->moduli[i]);
+
+      /* Reducing the exponent modulo the order of the group is only
+         sound if the basis belongs to the group. */
+      if (vmgj_crt_invertible(crt, i, basis))
+        {
+          mpz_mod(reduced, exponent, crt->phis[i]);
+          mpz_powm(residues[i], residues[i], reduced, crt->moduli[i]);
+        }
+      else
+        {
+          mpz_powm(residues[i], residues[i], exponent, crt->moduli[i]);
+        }
+    }
+  vmgj_crt_combine(rop, crt, residues);
+
+  mpz_clear(reduced);
+  gmpmee_array_clear_dealloc(residues, crt->len);
+}
+
+void
+vmgj_crt_clear(vmgj_crt *crt)
+{
+  gmpmee_array_clear_dealloc(crt->inverses, crt->len);
+  gmpmee_array_clear_dealloc(crt->prefixes, crt->len);
+  gmpmee_array_clear_dealloc(crt->phis, crt->len);
+  gmpmee_array_clear_dealloc(crt->moduli, crt->len);
+  gmpmee_array_clear_dealloc(crt->primes, crt->len);
+  mpz_clear(crt->modulus);
+  free(crt);
+}
+
+vmgj_crt_fpowm_tab *
+vmgj_crt_fpowm_init(vmgj_crt *crt, mpz_t basis, size_t block_width,
+                    size_t threads)
+{
+  size_t i;
+  size_t exponent_bitlen;
+  vmgj_crt_fpowm_tab *table =
+    (vmgj_crt_fpowm_tab *)malloc(sizeof(vmgj_crt_fpowm_tab));
+
+  table->crt = crt;
+  table->tabs =
+    (vmgj_fpowm_tab **)calloc(crt->len, sizeof(vmgj_fpowm_tab *));
+  table->invertible = (int *)malloc(crt->len * sizeof(int));
+
+  for (i = 0; i < crt->len; i++)
+    {
+      /* Exponents are reduced for invertible bases, so the table only
+         needs to cover exponents smaller than the order. Other
+         exponents are handled by mpz_powm within the table. */
+      table->invertible[i] = vmgj_crt_invertible(crt, i, basis);
+      exponent_bitlen = mpz_sizeinbase(crt->phis[i], 2);
+
+      table->tabs[i] = vmgj_fpowm_init(basis, crt->moduli[i], block_width,
+                                       exponent_bitlen, threads, 0);
+      if (table->tabs[i] == NULL)
+        {
+          vmgj_crt_fpowm_clear(table);
+          return NULL;
+        }
+    }
+  return table;
+}
+
+void
+vmgj_crt_fpowm(mpz_t rop, vmgj_crt_fpowm_tab *table, mpz_t exponent)
+{
+  size_t i;
+  size_t len = table->crt->len;
+  mpz_t *residues;
+  mpz_t reduced;
+
+  residues = gmpmee_array_alloc_init(len);
+  mpz_init(reduced);
+
+  for (i = 0; i < len; i++)
+    {
+      if (table->invertible[i])
+        {
+          mpz_mod(reduced, exponent, table->crt->phis[i]);
+          vmgj_fpowm(residues[i], table->tabs[i], reduced);
+        }
+      else
+        {
+          vmgj_fpowm(residues[i], table->tabs[i], exponent);
+        }
+    }
+  vmgj_crt_combine(rop, table->crt, residues);
+
+  mpz_clear(reduced);
+  gmpmee_array_clear_dealloc(residues, len);
+}
+
+void
+vmgj_crt_fpowm_clear(vmgj_crt_fpowm_tab *table)
+{
+  size_t i;
+
+  for (i = 0; i < table->crt->len; i++)
+    {
+      if (table->tabs[i] != NULL)
+        {
+          vmgj_fpowm_clear(table->tabs[i]);
+        }
+    }
+  free(table->invertible);
+  free(table->tabs);
+  free(table);
+}
@@ -0,0 +1,125 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stddef.h>
+#include <gmp.h>
+#include "fpowm.h"
+
+#ifndef _crt
+#define _crt
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Context for exponentiation modulo a product of powers of distinct
+ * primes using the Chinese remainder theorem. The ith component is
+ * modulo moduli[i] = primes[i]^powers[i], where exponents are reduced
+ * modulo phis[i], the order of the multiplicative group, when the
+ * basis is invertible. Results are recombined using Garner's
+ * algorithm, i.e., prefixes[i] is the product of the moduli of the
+ * components before the ith component, and inverses[i] is its
+ * inverse modulo moduli[i].
+ */
+typedef struct
+{
+  size_t len;
+  mpz_t modulus;
+  mpz_t *primes;
+  mpz_t *moduli;
+  mpz_t *phis;
+  mpz_t *prefixes;
+  mpz_t *inverses;
+} vmgj_crt;
+
+/*
+ * Fixed-basis exponentiation table modulo the modulus of a CRT
+ * context, i.e., one table for each component. If the basis is not
+ * invertible modulo a component, then exponents are not reduced for
+ * that component.
+ */
+typedef struct
+{
+  vmgj_crt *crt;
+  vmgj_fpowm_tab **tabs;
+  int *invertible;
+} vmgj_crt_fpowm_tab;
+
+/*
+ * Allocates a context for the product of the given primes raised to
+ * the given powers. NULL is returned if the primes are not pairwise
+ * coprime.
+ */
+vmgj_crt *
+vmgj_crt_init(mpz_t *primes, unsigned long *powers, size_t len);
+
+/*
+ * Sets rop to the integer modulo the modulus of the context that is
+ * congruent to residues[i] modulo the ith modulus for every i.
+ */
+void
+vmgj_crt_combine(mpz_t rop, vmgj_crt *crt, mpz_t *residues);
+
+/*
+ * Sets rop to basis raised to the non-negative exponent modulo the
+ * modulus of the context.
+ */
+void
+vmgj_crt_powm(mpz_t rop, vmgj_crt *crt, mpz_t basis, mpz_t exponent);
+
+/*
+ * Frees all resources of the context, including the context itself.
+ */
+void
+vmgj_crt_clear(vmgj_crt *crt);
+
+/*
+ * Allocates a fixed-basis table for the given basis modulo the
+ * modulus of the context. The context must not be cleared before the
+ * table. NULL is returned if the table can not be allocated.
+ */
+vmgj_crt_fpowm_tab *
+vmgj_crt_fpowm_init(vmgj_crt *crt, mpz_t basis, size_t block_width,
+                    size_t threads);
+
+/*
+ * Sets rop to the basis of the table raised to the non-negative
+ * exponent modulo the modulus of the context.
+ */
+void
+vmgj_crt_fpowm(mpz_t rop, vmgj_crt_fpowm_tab *table, mpz_t exponent);
+
+/*
+ * Frees all resources of the table, including the table itself.
+ */
+void
+vmgj_crt_fpowm_clear(vmgj_crt_fpowm_tab *table);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
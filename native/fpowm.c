@@ -0,0 +1,512 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stdlib.h>
+#include <string.h>
+#include <pthread.h>
+#include <gmp.h>
+#include "fpowm.h"
+
+/*
+ * Minimal number of products computed by each thread. Smaller levels
+ * of the table are computed by the calling thread.
+ */
+#define VMGJ_FPOWM_MIN_JOB 64
+
+/*
+ * Maximal number of masks of a recoded exponent stored on the stack.
+ */
+#define VMGJ_FPOWM_STACK_MASKS 512
+
+/*
+ * Part of a level of the table computed by a thread.
+ */
+typedef struct
+{
+  vmgj_fpowm_tab *table;
+  size_t level;
+  size_t start;
+  size_t end;
+} vmgj_fpowm_job;
+
+/*
+ * Sets entry to a read-only view of the entry of the table with the
+ * given index.
+ */
+static void
+vmgj_fpowm_load(mpz_t entry, vmgj_fpowm_tab *table, size_t index)
+{
+  mpz_roinit_n(entry, table->tab + index * table->limbs,
+               (mp_size_t)table->limbs);
+}
+
+/*
+ * Stores the given non-negative value, which must be reduced modulo
+ * the modulus, as the entry of the table with the given index.
+ */
+static void
+vmgj_fpowm_store(vmgj_fpowm_tab *table, size_t index, mpz_t value)
+{
+  size_t size = mpz_size(value);
+  mp_limb_t *entry = table->tab + index * table->limbs;
+
+  memcpy(entry, mpz_limbs_read(value), size * sizeof(mp_limb_t));
+  memset(entry + size, 0, (table->limbs - size) * sizeof(mp_limb_t));
+}
+
+/*
+ * Computes tab[2^level + m] = tab[m] * tab[2^level] for m in the
+ * range of the job.
+ */
+static void *
+vmgj_fpowm_fill(void *arg)
+{
+  size_t m;
+  vmgj_fpowm_job *job = (vmgj_fpowm_job *)arg;
+  vmgj_fpowm_tab *table = job->table;
+  size_t high = (size_t)1 << job->level;
+  mpz_t low_entry;
+  mpz_t high_entry;
+  mpz_t product;
+
+  mpz_init(product);
+  vmgj_fpowm_load(high_entry, table, high);
+  for (m = job->start; m < job->end; m++)
+    {
+      vmgj_fpowm_load(low_entry, table, m);
+      mpz_mul(product, low_entry, high_entry);
+      mpz_mod(product, product, table->modulus);
+      vmgj_fpowm_store(table, high + m, product);
+    }
+  mpz_clear(product);
+  return NULL;
+}
+
+/*
+ * Computes a level of the table, i.e., all entries with index in
+ * [2^level + 1, 2^(level + 1)), using the threads of the table.
+ */
+static void
+vmgj_fpowm_level(vmgj_fpowm_tab *table, size_t level)
+{
+  size_t i;
+  size_t threads;
+  size_t len = ((size_t)1 << level) - 1;
+  vmgj_fpowm_job *jobs;
+  pthread_t *ids;
+  int *started;
+
+  threads = table->threads;
+  if (threads > len / VMGJ_FPOWM_MIN_JOB)
+    {
+      threads = len / VMGJ_FPOWM_MIN_JOB;
+    }
+  if (threads <= 1)
+    {
+      vmgj_fpowm_job job = { table, level, 1, len + 1 };
+      vmgj_fpowm_fill(&job);
+      return;
+    }
+
+  jobs = (vmgj_fpowm_job *)malloc(threads * sizeof(vmgj_fpowm_job));
+  ids = (pthread_t *)malloc(threads * sizeof(pthread_t));
+  started = (int *)malloc(threads * sizeof(int));
+
+  /* If the bookkeeping can not be allocated, then the calling thread
+     computes the complete level. */
+  if (jobs == NULL || ids == NULL || started == NULL)
+    {
+      vmgj_fpowm_job job = { table, level, 1, len + 1 };
+
+      free(started);
+      free(ids);
+      free(jobs);
+      vmgj_fpowm_fill(&job);
+      return;
+    }
+
+  for (i = 0; i < threads; i++)
+    {
+      jobs[i].table = table;
+      jobs[i].level = level;
+      jobs[i].start = 1 + (i * len) / threads;
+      jobs[i].end = 1 + ((i + 1) * len) / threads;
+    }
+
+  /* The calling thread computes the first job. If a thread can not
+     be created, then its job is also computed by the calling
+     thread. */
+  for (i = 1; i < threads; i++)
+    {
+      started[i] = pthread_create(&(ids[i]), NULL, vmgj_fpowm_fill,
+                                  &(jobs[i])) == 0;
+    }
+  vmgj_fpowm_fill(&(jobs[0]));
+  for (i = 1; i < threads; i++)
+    {
+      if (started[i])
+        {
+          pthread_join(ids[i], NULL);
+        }
+      else
+        {
+          vmgj_fpowm_fill(&(jobs[i]));
+        }
+    }
+
+  free(started);
+  free(ids);
+  free(jobs);
+}
+
+/*
+ * Performs the precomputation and marks the table as ready.
+ */
+static void *
+vmgj_fpowm_precomp(void *arg)
+{
+  size_t j;
+  vmgj_fpowm_tab *table = (vmgj_fpowm_tab *)arg;
+  mpz_t power;
+  mpz_t exponent;
+
+  /* tab[0] = 1 and tab[2^j] = basis^(2^(j * stride)), which is
+     inherently sequential. */
+  mpz_init_set_ui(power, 1);
+  mpz_mod(power, power, table->modulus);
+  vmgj_fpowm_store(table, 0, power);
+
+  mpz_init_set_ui(exponent, 1);
+  mpz_mul_2exp(exponent, exponent, table->stride);
+  mpz_mod(power, table->basis, table->modulus);
+  vmgj_fpowm_store(table, 1, power);
+  for (j = 1; j < table->block_width; j++)
+    {
+      mpz_powm(power, power, exponent, table->modulus);
+      vmgj_fpowm_store(table, (size_t)1 << j, power);
+    }
+  mpz_clear(exponent);
+  mpz_clear(power);
+
+  /* Each level only depends on lower levels, and the products of a
+     level are independent. */
+  for (j = 1; j < table->block_width; j++)
+    {
+      vmgj_fpowm_level(table, j);
+    }
+
+  pthread_mutex_lock(&(table->mutex));
+  __atomic_store_n(&(table->ready), 1, __ATOMIC_RELEASE);
+  pthread_cond_broadcast(&(table->cond));
+  pthread_mutex_unlock(&(table->mutex));
+
+  return NULL;
+}
+
+/*
+ * Returns the number of limbs of an integer of the given bit length.
+ */
+static size_t
+vmgj_fpowm_limbs(size_t bitlen)
+{
+  size_t limbs = (bitlen + GMP_NUMB_BITS - 1) / GMP_NUMB_BITS;
+  return limbs == 0 ? 1 : limbs;
+}
+
+size_t
+vmgj_fpowm_size(size_t modulus_bitlen, size_t block_width)
+{
+  size_t limbs = vmgj_fpowm_limbs(modulus_bitlen);
+
+  /* The table itself, the limbs of the basis and modulus, and the
+     entries. */
+  return sizeof(vmgj_fpowm_tab)
+    + (2 + ((size_t)1 << block_width)) * limbs * sizeof(mp_limb_t);
+}
+
+vmgj_fpowm_tab *
+vmgj_fpowm_init(mpz_t basis, mpz_t modulus, size_t block_width,
+                size_t exponent_bitlen, size_t threads, int lazy)
+{
+  vmgj_fpowm_tab *table;
+  size_t limbs = vmgj_fpowm_limbs(mpz_sizeinbase(modulus, 2));
+
+  if (block_width == 0)
+    {
+      block_width = 1;
+    }
+
+  table = (vmgj_fpowm_tab *)malloc(sizeof(vmgj_fpowm_tab));
+  if (table == NULL)
+    {
+      return NULL;
+    }
+  table->tab_len = (size_t)1 << block_width;
+  table->limbs = limbs;
+  table->tab = (mp_limb_t *)malloc(table->tab_len * limbs * sizeof(mp_limb_t));
+  if (table->tab == NULL)
+    {
+      free(table);
+      return NULL;
+    }
+
+  /* The basis is reduced, so that both fit in the limbs of the
+     modulus. */
+  mpz_init2(table->basis, limbs * GMP_NUMB_BITS);
+  mpz_mod(table->basis, basis, modulus);
+  mpz_init2(table->modulus, limbs * GMP_NUMB_BITS);
+  mpz_set(table->modulus, modulus);
+  table->block_width = block_width;
+  table->stride = (exponent_bitlen + block_width - 1) / block_width;
+  if (table->stride == 0)
+    {
+      table->stride = 1;
+    }
+  table->threads = threads == 0 ? 1 : threads;
+  table->ready = 0;
+  table->lazy = 0;
+  pthread_mutex_init(&(table->mutex), NULL);
+  pthread_cond_init(&(table->cond), NULL);
+
+  if (lazy
+      && pthread_create(&(table->worker), NULL, vmgj_fpowm_precomp, table)
+      == 0)
+    {
+      table->lazy = 1;
+    }
+  else
+    {
+      vmgj_fpowm_precomp(table);
+    }
+  return table;
+}
+
+int
+vmgj_fpowm_recode(size_t *masks, vmgj_fpowm_tab *table, mpz_t exponent)
+{
+  size_t i;
+  size_t j;
+  size_t mask;
+
+  /* Exponents that do not fit the table are handled by GMP, as are
+     all exponents until the table is ready. */
+  if (!__atomic_load_n(&(table->ready), __ATOMIC_ACQUIRE)
+      || mpz_sgn(exponent) < 0
+      || mpz_sizeinbase(exponent, 2) > table->block_width * table->stride)
+    {
+      return 0;
+    }
+
+  /* The ith mask collects the ith bit of each slice. */
+  for (i = 0; i < table->stride; i++)
+    {
+      mask = 0;
+      for (j = 0; j < table->block_width; j++)
+        {
+          mask |= (size_t)mpz_tstbit(exponent, j * table->stride + i) << j;
+        }
+      masks[i] = mask;
+    }
+  return 1;
+}
+
+void
+vmgj_fpowm_masks(mpz_t rop, vmgj_fpowm_tab *table, size_t *masks)
+{
+  size_t i;
+  mpz_t entry;
+  mpz_t result;
+
+  mpz_init_set_ui(result, 1);
+  for (i = table->stride; i-- > 0;)
+    {
+      mpz_mul(result, result, result);
+      mpz_mod(result, result, table->modulus);
+
+      if (masks[i] != 0)
+        {
+          vmgj_fpowm_load(entry, table, masks[i]);
+          mpz_mul(result, result, entry);
+          mpz_mod(result, result, table->modulus);
+        }
+    }
+  mpz_mod(result, result, table->modulus);
+  mpz_swap(rop, result);
+  mpz_clear(result);
+}
+
+void
+vmgj_fpowm(mpz_t rop, vmgj_fpowm_tab *table, mpz_t exponent)
+{
+  size_t stack_masks[VMGJ_FPOWM_STACK_MASKS];
+  size_t *masks = stack_masks;
+
+  if (table->stride > VMGJ_FPOWM_STACK_MASKS)
+    {
+      masks = (size_t *)malloc(table->stride * sizeof(size_t));
+    }
+
+  /* The recoding only reads the exponent, so rop may be the
+     exponent. If the masks can not be allocated, then we compute the
+     result without the table. */
+  if (masks != NULL && vmgj_fpowm_recode(masks, table, exponent))
+    {
+      vmgj_fpowm_masks(rop, table, masks);
+    }
+  else
+    {
+      mpz_powm(rop, table->basis, exponent, table->modulus);
+    }
+
+  if (masks != stack_masks)
+    {
+      free(masks);
+    }
+}
+
+vmgj_fpowm_multi_tab *
+vmgj_fpowm_multi_init(mpz_t *bases, size_t len, mpz_t modulus,
+                      size_t block_width, size_t exponent_bitlen,
+                      size_t threads)
+{
+  size_t i;
+  vmgj_fpowm_multi_tab *table =
+    (vmgj_fpowm_multi_tab *)malloc(sizeof(vmgj_fpowm_multi_tab));
+
+  if (table == NULL)
+    {
+      return NULL;
+    }
+  table->len = len;
+  table->tabs = (vmgj_fpowm_tab **)calloc(len, sizeof(vmgj_fpowm_tab *));
+  if (table->tabs == NULL)
+    {
+      free(table);
+      return NULL;
+    }
+
+  for (i = 0; i < len; i++)
+    {
+      table->tabs[i] = vmgj_fpowm_init(bases[i], modulus, block_width,
+                                       exponent_bitlen, threads, 0);
+      if (table->tabs[i] == NULL)
+        {
+          vmgj_fpowm_multi_clear(table);
+          return NULL;
+        }
+    }
+  return table;
+}
+
+void
+vmgj_fpowm_multi(mpz_t *rops, vmgj_fpowm_multi_tab *table, mpz_t exponent)
+{
+  size_t i;
+  size_t stride = table->tabs[0]->stride;
+  size_t stack_masks[VMGJ_FPOWM_STACK_MASKS];
+  size_t *masks = stack_masks;
+
+  if (stride > VMGJ_FPOWM_STACK_MASKS)
+    {
+      masks = (size_t *)malloc(stride * sizeof(size_t));
+    }
+
+  /* All tables have the same parameters, so the exponent is recoded
+     once and the masks are used with every table. If the masks can
+     not be allocated, then we compute the results without the
+     tables. */
+  if (masks != NULL && vmgj_fpowm_recode(masks, table->tabs[0], exponent))
+    {
+      for (i = 0; i < table->len; i++)
+        {
+          vmgj_fpowm_masks(rops[i], table->tabs[i], masks);
+        }
+    }
+  else
+    {
+      for (i = 0; i < table->len; i++)
+        {
+          mpz_powm(rops[i], table->tabs[i]->basis, exponent,
+                   table->tabs[i]->modulus);
+        }
+    }
+
+  if (masks != stack_masks)
+    {
+      free(masks);
+    }
+}
+
+void
+vmgj_fpowm_multi_clear(vmgj_fpowm_multi_tab *table)
+{
+  size_t i;
+
+  for (i = 0; i < table->len; i++)
+    {
+      if (table->tabs[i] != NULL)
+        {
+          vmgj_fpowm_clear(table->tabs[i]);
+        }
+    }
+  free(table->tabs);
+  free(table);
+}
+
+int
+vmgj_fpowm_ready(vmgj_fpowm_tab *table)
+{
+  return __atomic_load_n(&(table->ready), __ATOMIC_ACQUIRE);
+}
+
+void
+vmgj_fpowm_wait(vmgj_fpowm_tab *table)
+{
+  pthread_mutex_lock(&(table->mutex));
+  while (!table->ready)
+    {
+      pthread_cond_wait(&(table->cond), &(table->mutex));
+    }
+  pthread_mutex_unlock(&(table->mutex));
+}
+
+void
+vmgj_fpowm_clear(vmgj_fpowm_tab *table)
+{
+  if (table->lazy)
+    {
+      pthread_join(table->worker, NULL);
+    }
+
+  free(table->tab);
+
+  pthread_cond_destroy(&(table->cond));
+  pthread_mutex_destroy(&(table->mutex));
+  mpz_clear(table->modulus);
+  mpz_clear(table->basis);
+  free(table);
+}
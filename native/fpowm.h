@@ -0,0 +1,175 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stddef.h>
+#include <pthread.h>
+#include <gmp.h>
+
+#ifndef _fpowm
+#define _fpowm
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Table for fixed-basis modular exponentiation using the comb
+ * method. An exponent of at most block_width * stride bits is viewed
+ * as block_width slices of stride bits each, and the table holds the
+ * products of all subsets of the powers basis^(2^(j * stride)) for
+ * 0 <= j < block_width, i.e., tab[mask] is the product of the powers
+ * for which the jth bit of mask is set.
+ *
+ * In contrast to the table of GMPMEE, the precomputation can be
+ * executed by multiple threads, and in the background, in which case
+ * exponentiations are computed using mpz_powm until the table is
+ * ready.
+ *
+ * The entries are stored as packed arrays of limbs, each of the
+ * number of limbs of the modulus, in a single allocation, which
+ * avoids the overhead of one allocation and one mpz_t for each entry
+ * and gives a table of known size.
+ */
+typedef struct
+{
+  mpz_t basis;
+  mpz_t modulus;
+  size_t block_width;
+  size_t stride;
+  size_t tab_len;
+  size_t limbs;
+  mp_limb_t *tab;
+  size_t threads;
+  int ready;
+  int lazy;
+  pthread_t worker;
+  pthread_mutex_t mutex;
+  pthread_cond_t cond;
+} vmgj_fpowm_tab;
+
+/*
+ * Tables with identical parameters for several bases and a common
+ * modulus, which allows sharing the recoding of exponents.
+ */
+typedef struct
+{
+  size_t len;
+  vmgj_fpowm_tab **tabs;
+} vmgj_fpowm_multi_tab;
+
+/*
+ * Returns the number of bytes allocated for a table for a modulus of
+ * the given bit length and the given block width, excluding the
+ * overhead of the memory allocator.
+ */
+size_t
+vmgj_fpowm_size(size_t modulus_bitlen, size_t block_width);
+
+/*
+ * Allocates a table for the given basis, modulus, block width, and
+ * maximal bit length of exponents and performs precomputation using
+ * the given number of threads. If lazy is non-zero, then the
+ * precomputation is executed by a background thread and this
+ * function returns immediately. NULL is returned if the table can
+ * not be allocated.
+ */
+vmgj_fpowm_tab *
+vmgj_fpowm_init(mpz_t basis, mpz_t modulus, size_t block_width,
+                size_t exponent_bitlen, size_t threads, int lazy);
+
+/*
+ * Sets rop to the basis of the table raised to the given exponent
+ * modulo the modulus of the table. This is safe to call from
+ * multiple threads concurrently. If memory for recoding the exponent
+ * can not be allocated, then mpz_powm is used instead of the table.
+ */
+void
+vmgj_fpowm(mpz_t rop, vmgj_fpowm_tab *table, mpz_t exponent);
+
+/*
+ * Recodes the exponent for the comb method, i.e., masks[i] is formed
+ * from the ith bit of each slice of the exponent, where masks must
+ * have room for table->stride masks. Zero is returned if the table
+ * can not be used for the exponent, since it is negative or too
+ * long, or since the table is not ready.
+ */
+int
+vmgj_fpowm_recode(size_t *masks, vmgj_fpowm_tab *table, mpz_t exponent);
+
+/*
+ * Sets rop to the basis of the table raised to the exponent recoded
+ * by vmgj_fpowm_recode, modulo the modulus of the table.
+ */
+void
+vmgj_fpowm_masks(mpz_t rop, vmgj_fpowm_tab *table, size_t *masks);
+
+/*
+ * Allocates tables with identical parameters for the given bases and
+ * performs precomputation using the given number of threads for each
+ * table. NULL is returned if the tables can not be allocated.
+ */
+vmgj_fpowm_multi_tab *
+vmgj_fpowm_multi_init(mpz_t *bases, size_t len, mpz_t modulus,
+                      size_t block_width, size_t exponent_bitlen,
+                      size_t threads);
+
+/*
+ * Sets rops[i] to the ith basis raised to the given exponent modulo
+ * the modulus, where the exponent is only recoded once. As for
+ * vmgj_fpowm, mpz_powm is used if the recoding can not be allocated.
+ */
+void
+vmgj_fpowm_multi(mpz_t *rops, vmgj_fpowm_multi_tab *table, mpz_t exponent);
+
+/*
+ * Frees all resources of the tables, including the structure itself.
+ */
+void
+vmgj_fpowm_multi_clear(vmgj_fpowm_multi_tab *table);
+
+/*
+ * Returns non-zero if the precomputation is completed.
+ */
+int
+vmgj_fpowm_ready(vmgj_fpowm_tab *table);
+
+/*
+ * Blocks until the precomputation is completed.
+ */
+void
+vmgj_fpowm_wait(vmgj_fpowm_tab *table);
+
+/*
+ * Waits for the precomputation to complete and frees all resources
+ * of the table, including the table itself.
+ */
+void
+vmgj_fpowm_clear(vmgj_fpowm_tab *table);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,106 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stdlib.h>
+#include <gmp.h>
+#include "gmpmee.h"
+#include "group.h"
+
+vmgj_group *
+vmgj_group_init(mpz_t modulus, mpz_t order)
+{
+  vmgj_group *group = (vmgj_group *)malloc(sizeof(vmgj_group));
+
+  if (group == NULL)
+    {
+      return NULL;
+    }
+  mpz_init_set(group->modulus, modulus);
+  mpz_init_set(group->order, order);
+  return group;
+}
+
+void
+vmgj_group_reduce(mpz_t rop, vmgj_group *group, mpz_t exponent)
+{
+  /* Exponents that are already reduced are common, so we avoid the
+     division in that case. */
+  if (mpz_sgn(exponent) < 0 || mpz_cmp(exponent, group->order) >= 0)
+    {
+      mpz_mod(rop, exponent, group->order);
+    }
+  else
+    {
+      mpz_set(rop, exponent);
+    }
+}
+
+void
+vmgj_group_powm(mpz_t rop, vmgj_group *group, mpz_t basis, mpz_t exponent)
+{
+  mpz_t reduced;
+
+  /* GMP chooses the window size from the length of the exponent, so
+     the reduced exponent also gives a smaller window. */
+  mpz_init(reduced);
+  vmgj_group_reduce(reduced, group, exponent);
+  mpz_powm(rop, basis, reduced, group->modulus);
+  mpz_clear(reduced);
+}
+
+void
+vmgj_group_spowm(mpz_t rop, vmgj_group *group, mpz_t *bases,
+                 mpz_t *exponents, size_t len)
+{
+  size_t i;
+
+  for (i = 0; i < len; i++)
+    {
+      vmgj_group_reduce(exponents[i], group, exponents[i]);
+    }
+  gmpmee_spowm(rop, bases, exponents, len, group->modulus);
+}
+
+void
+vmgj_group_fpowm(mpz_t rop, vmgj_group *group, vmgj_fpowm_tab *table,
+                 mpz_t exponent)
+{
+  mpz_t reduced;
+
+  mpz_init(reduced);
+  vmgj_group_reduce(reduced, group, exponent);
+  vmgj_fpowm(rop, table, reduced);
+  mpz_clear(reduced);
+}
+
+void
+vmgj_group_clear(vmgj_group *group)
+{
+  mpz_clear(group->order);
+  mpz_clear(group->modulus);
+  free(group);
+}
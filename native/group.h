@@ -0,0 +1,99 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stddef.h>
+#include <gmp.h>
+#include "fpowm.h"
+
+#ifndef _group
+#define _group
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Context for exponentiation in a subgroup of known order of the
+ * multiplicative group modulo a modulus. Exponents are reduced modulo
+ * the order before exponentiation, which is only sound for elements
+ * of the subgroup.
+ */
+typedef struct
+{
+  mpz_t modulus;
+  mpz_t order;
+} vmgj_group;
+
+/*
+ * Allocates and initializes a context for the given modulus and
+ * order. NULL is returned if the context can not be allocated.
+ */
+vmgj_group *
+vmgj_group_init(mpz_t modulus, mpz_t order);
+
+/*
+ * Sets rop to the exponent reduced modulo the order, i.e., to a
+ * non-negative integer smaller than the order. The operands may be
+ * the same variable.
+ */
+void
+vmgj_group_reduce(mpz_t rop, vmgj_group *group, mpz_t exponent);
+
+/*
+ * Sets rop to basis^exponent modulo the modulus, where the exponent
+ * is reduced modulo the order.
+ */
+void
+vmgj_group_powm(mpz_t rop, vmgj_group *group, mpz_t basis, mpz_t exponent);
+
+/*
+ * Sets rop to the product of bases[i]^exponents[i] modulo the
+ * modulus, where the exponents are reduced modulo the order in
+ * place.
+ */
+void
+vmgj_group_spowm(mpz_t rop, vmgj_group *group, mpz_t *bases,
+                 mpz_t *exponents, size_t len);
+
+/*
+ * Sets rop to the basis of the table raised to the exponent modulo
+ * the modulus, where the exponent is reduced modulo the order.
+ */
+void
+vmgj_group_fpowm(mpz_t rop, vmgj_group *group, vmgj_fpowm_tab *table,
+                 mpz_t exponent);
+
+/*
+ * Frees all resources of the context, including the structure
+ * itself.
+ */
+void
+vmgj_group_clear(vmgj_group *group);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,227 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stdlib.h>
+#include <string.h>
+#include "prg.h"
+
+static const uint32_t vmgj_sha256_k[64] =
+  {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5,
+    0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3,
+    0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc,
+    0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+    0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13,
+    0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3,
+    0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5,
+    0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208,
+    0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+#define VMGJ_ROTR(x, n) (((x) >> (n)) | ((x) << (32 - (n))))
+
+/*
+ * Processes a 64 byte block of the padded message.
+ */
+static void
+vmgj_sha256_block(uint32_t *state, const unsigned char *block)
+{
+  size_t i;
+  uint32_t w[64];
+  uint32_t a, b, c, d, e, f, g, h;
+  uint32_t s0, s1, t1, t2;
+
+  for (i = 0; i < 16; i++)
+    {
+      w[i] = ((uint32_t)block[4 * i] << 24)
+        | ((uint32_t)block[4 * i + 1] << 16)
+        | ((uint32_t)block[4 * i + 2] << 8)
+        | (uint32_t)block[4 * i + 3];
+    }
+  for (i = 16; i < 64; i++)
+    {
+      s0 = VMGJ_ROTR(w[i - 15], 7) ^ VMGJ_ROTR(w[i - 15], 18)
+        ^ (w[i - 15] >> 3);
+      s1 = VMGJ_ROTR(w[i - 2], 17) ^ VMGJ_ROTR(w[i - 2], 19)
+        ^ (w[i - 2] >> 10);
+      w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+    }
+
+  a = state[0];
+  b = state[1];
+  c = state[2];
+  d = state[3];
+  e = state[4];
+  f = state[5];
+  g = state[6];
+  h = state[7];
+
+  for (i = 0; i < 64; i++)
+    {
+      s1 = VMGJ_ROTR(e, 6) ^ VMGJ_ROTR(e, 11) ^ VMGJ_ROTR(e, 25);
+      t1 = h + s1 + ((e & f) ^ (~e & g)) + vmgj_sha256_k[i] + w[i];
+      s0 = VMGJ_ROTR(a, 2) ^ VMGJ_ROTR(a, 13) ^ VMGJ_ROTR(a, 22);
+      t2 = s0 + ((a & b) ^ (a & c) ^ (b & c));
+      h = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    }
+
+  state[0] += a;
+  state[1] += b;
+  state[2] += c;
+  state[3] += d;
+  state[4] += e;
+  state[5] += f;
+  state[6] += g;
+  state[7] += h;
+}
+
+void
+vmgj_sha256(unsigned char *digest, const unsigned char *data, size_t len)
+{
+  size_t i;
+  size_t rem;
+  unsigned char last[128];
+  uint64_t bits = (uint64_t)len * 8;
+  uint32_t state[8] =
+    {
+      0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+      0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+  for (i = 0; i + 64 <= len; i += 64)
+    {
+      vmgj_sha256_block(state, data + i);
+    }
+
+  /* The remaining bytes are padded with a one bit, zeros, and the
+     bit length of the message, which requires one or two blocks. */
+  rem = len - i;
+  memset(last, 0, sizeof(last));
+  memcpy(last, data + i, rem);
+  last[rem] = 0x80;
+  rem = rem < 56 ? 64 : 128;
+  for (i = 0; i < 8; i++)
+    {
+      last[rem - 1 - i] = (unsigned char)(bits >> (8 * i));
+    }
+  vmgj_sha256_block(state, last);
+  if (rem == 128)
+    {
+      vmgj_sha256_block(state, last + 64);
+    }
+
+  for (i = 0; i < 8; i++)
+    {
+      digest[4 * i] = (unsigned char)(state[i] >> 24);
+      digest[4 * i + 1] = (unsigned char)(state[i] >> 16);
+      digest[4 * i + 2] = (unsigned char)(state[i] >> 8);
+      digest[4 * i + 3] = (unsigned char)state[i];
+    }
+}
+
+int
+vmgj_prg_init(vmgj_prg *prg, const unsigned char *seed, size_t seed_len)
+{
+  /* The input of the hash function is the seed followed by the
+     counter. */
+  prg->input = (unsigned char *)malloc(seed_len + 4);
+  if (prg->input == NULL)
+    {
+      return 0;
+    }
+  memcpy(prg->input, seed, seed_len);
+  prg->seed_len = seed_len;
+  prg->counter = 0;
+  prg->pos = VMGJ_SHA256_BYTES;
+  return 1;
+}
+
+void
+vmgj_prg_next(vmgj_prg *prg, unsigned char *out, size_t len)
+{
+  size_t n;
+  unsigned char *counter = prg->input + prg->seed_len;
+
+  while (len > 0)
+    {
+      if (prg->pos == VMGJ_SHA256_BYTES)
+        {
+          counter[0] = (unsigned char)(prg->counter >> 24);
+          counter[1] = (unsigned char)(prg->counter >> 16);
+          counter[2] = (unsigned char)(prg->counter >> 8);
+          counter[3] = (unsigned char)prg->counter;
+          vmgj_sha256(prg->block, prg->input, prg->seed_len + 4);
+          prg->counter++;
+          prg->pos = 0;
+        }
+
+      n = VMGJ_SHA256_BYTES - prg->pos;
+      if (n > len)
+        {
+          n = len;
+        }
+      memcpy(out, prg->block + prg->pos, n);
+      prg->pos += n;
+      out += n;
+      len -= n;
+    }
+}
+
+void
+vmgj_prg_integers(vmgj_prg *prg, unsigned char *bytes, size_t count,
+                  size_t bitlen)
+{
+  size_t i;
+  size_t width = (bitlen + 7) / 8;
+  unsigned char mask = (unsigned char)(0xff >> (8 * width - bitlen));
+
+  for (i = 0; i < count; i++)
+    {
+      vmgj_prg_next(prg, bytes + i * width, width);
+      bytes[i * width] &= mask;
+    }
+}
+
+void
+vmgj_prg_clear(vmgj_prg *prg)
+{
+  free(prg->input);
+}
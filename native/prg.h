@@ -0,0 +1,95 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <stddef.h>
+#include <stdint.h>
+
+#ifndef _prg
+#define _prg
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Number of bytes of a SHA-256 digest.
+ */
+#define VMGJ_SHA256_BYTES 32
+
+/*
+ * Deterministic pseudo-random generator based on SHA-256 in counter
+ * mode, i.e., the output is the concatenation of the blocks
+ * SHA-256(seed | k) for k = 0, 1, 2, ..., where k is encoded as four
+ * bytes in big-endian byte order.
+ */
+typedef struct
+{
+  unsigned char *input;
+  size_t seed_len;
+  uint32_t counter;
+  unsigned char block[VMGJ_SHA256_BYTES];
+  size_t pos;
+} vmgj_prg;
+
+/*
+ * Computes the SHA-256 digest of the data.
+ */
+void
+vmgj_sha256(unsigned char *digest, const unsigned char *data, size_t len);
+
+/*
+ * Initializes the generator with the given seed. Zero is returned if
+ * memory can not be allocated.
+ */
+int
+vmgj_prg_init(vmgj_prg *prg, const unsigned char *seed, size_t seed_len);
+
+/*
+ * Writes the next len bytes of output of the generator to out.
+ */
+void
+vmgj_prg_next(vmgj_prg *prg, unsigned char *out, size_t len);
+
+/*
+ * Writes the next count integers of the given bit length to bytes,
+ * stored consecutively in big-endian byte order using (bitlen + 7) / 8
+ * bytes each. Each integer is formed from the next bytes of output
+ * with the leading bits beyond the bit length set to zero.
+ */
+void
+vmgj_prg_integers(vmgj_prg *prg, unsigned char *bytes, size_t count,
+                  size_t bitlen);
+
+/*
+ * Frees the resources of the generator.
+ */
+void
+vmgj_prg_clear(vmgj_prg *prg);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
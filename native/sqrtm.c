@@ -0,0 +1,201 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <gmp.h>
+#include "sqrtm.h"
+
+int
+vmgj_sqrtm_init(vmgj_sqrtm_ctx *ctx, mpz_t odd_prime)
+{
+  int found;
+  unsigned long bitlen;
+  unsigned long candidates;
+  mpz_t z;
+
+  mpz_init_set(ctx->prime, odd_prime);
+  mpz_init(ctx->half);
+  mpz_init(ctx->q);
+  mpz_init(ctx->exponent);
+  mpz_init(ctx->generator);
+  ctx->s = 0;
+
+  if (mpz_cmp_ui(odd_prime, 3) < 0 || mpz_even_p(odd_prime))
+    {
+      return 0;
+    }
+
+  /* Roots larger than half are replaced by their negatives. */
+  mpz_sub_ui(ctx->half, odd_prime, 1);
+  mpz_tdiv_q_2exp(ctx->half, ctx->half, 1);
+
+  /* p - 1 = q * 2^s with q odd. */
+  mpz_sub_ui(ctx->q, odd_prime, 1);
+  ctx->s = mpz_scan1(ctx->q, 0);
+  mpz_tdiv_q_2exp(ctx->q, ctx->q, ctx->s);
+
+  if (ctx->s == 1)
+    {
+      mpz_add_ui(ctx->exponent, odd_prime, 1);
+      mpz_tdiv_q_2exp(ctx->exponent, ctx->exponent, 2);
+    }
+  else
+    {
+      mpz_add_ui(ctx->exponent, ctx->q, 1);
+      mpz_tdiv_q_2exp(ctx->exponent, ctx->exponent, 1);
+
+      /* Half of all non-zero elements are non-residues, so the
+         search ends quickly for a prime. There may be no non-residue
+         for a composite, e.g., a square, so we bound the search by
+         2 * bitlen^2, which exceeds the bound 2 * ln(p)^2 on the
+         smallest non-residue modulo a prime that holds under the
+         extended Riemann hypothesis. */
+      bitlen = (unsigned long)mpz_sizeinbase(odd_prime, 2);
+      candidates = 2 * bitlen * bitlen;
+      found = 0;
+      mpz_init_set_ui(z, 2);
+      while (!found && candidates-- > 0 && mpz_cmp(z, odd_prime) < 0)
+        {
+          if (mpz_legendre(z, odd_prime) == -1)
+            {
+              found = 1;
+            }
+          else
+            {
+              mpz_add_ui(z, z, 1);
+            }
+        }
+      if (!found)
+        {
+          mpz_clear(z);
+          return 0;
+        }
+      mpz_powm(ctx->generator, z, ctx->q, odd_prime);
+      mpz_clear(z);
+    }
+  return 1;
+}
+
+int
+vmgj_sqrtm(mpz_t rop, mpz_t op, vmgj_sqrtm_ctx *ctx)
+{
+  int symbol;
+  unsigned long i;
+  unsigned long m;
+  mpz_t a;
+  mpz_t c;
+  mpz_t t;
+  mpz_t b;
+
+  mpz_init(a);
+  mpz_mod(a, op, ctx->prime);
+
+  symbol = mpz_legendre(a, ctx->prime);
+  if (symbol != 1)
+    {
+      mpz_set_ui(rop, 0);
+      mpz_clear(a);
+      return symbol;
+    }
+
+  if (ctx->s == 1)
+    {
+      mpz_powm(rop, a, ctx->exponent, ctx->prime);
+    }
+  else
+    {
+      mpz_init_set(c, ctx->generator);
+      mpz_init(t);
+      mpz_init(b);
+
+      /* Invariant: r^2 = a * t, where t has order 2^i for some i < m,
+         and c has order 2^m. */
+      m = ctx->s;
+      mpz_powm(t, a, ctx->q, ctx->prime);
+      mpz_powm(a, a, ctx->exponent, ctx->prime);
+
+      while (mpz_cmp_ui(t, 1) != 0)
+        {
+          /* Find the order 2^i of t. For a prime i < m, so
+             reaching m shows that the modulus is not a prime. */
+          i = 0;
+          mpz_set(b, t);
+          while (mpz_cmp_ui(b, 1) != 0 && i < m)
+            {
+              mpz_mul(b, b, b);
+              mpz_mod(b, b, ctx->prime);
+              i++;
+            }
+          if (i == m)
+            {
+              mpz_clear(b);
+              mpz_clear(t);
+              mpz_clear(c);
+              mpz_clear(a);
+              return VMGJ_SQRTM_NOT_PRIME;
+            }
+
+          /* b = c^(2^(m - i - 1)) has order 2^(i + 1). */
+          mpz_set(b, c);
+          for (m = m - i - 1; m > 0; m--)
+            {
+              mpz_mul(b, b, b);
+              mpz_mod(b, b, ctx->prime);
+            }
+          m = i;
+
+          mpz_mul(c, b, b);
+          mpz_mod(c, c, ctx->prime);
+          mpz_mul(t, t, c);
+          mpz_mod(t, t, ctx->prime);
+          mpz_mul(a, a, b);
+          mpz_mod(a, a, ctx->prime);
+        }
+      mpz_swap(rop, a);
+
+      mpz_clear(b);
+      mpz_clear(t);
+      mpz_clear(c);
+    }
+
+  if (mpz_cmp(rop, ctx->half) > 0)
+    {
+      mpz_sub(rop, ctx->prime, rop);
+    }
+
+  mpz_clear(a);
+  return symbol;
+}
+
+void
+vmgj_sqrtm_clear(vmgj_sqrtm_ctx *ctx)
+{
+  mpz_clear(ctx->generator);
+  mpz_clear(ctx->exponent);
+  mpz_clear(ctx->q);
+  mpz_clear(ctx->half);
+  mpz_clear(ctx->prime);
+}
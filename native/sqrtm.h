@@ -0,0 +1,92 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+#include <gmp.h>
+
+#ifndef _sqrtm
+#define _sqrtm
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Returned by vmgj_sqrtm if it detects that the modulus of the
+ * context is not a prime.
+ */
+#define VMGJ_SQRTM_NOT_PRIME 2
+
+/*
+ * Precomputed values for computing square roots modulo an odd prime
+ * p using the Tonelli-Shanks algorithm, where p - 1 = q * 2^s with q
+ * odd. If s = 1, i.e., p = 3 mod 4, then a root of a is simply
+ * a^((p + 1) / 4), which is precomputed as exponent. Otherwise,
+ * exponent holds (q + 1) / 2 and generator holds z^q for a quadratic
+ * non-residue z, which generates the 2-Sylow subgroup.
+ */
+typedef struct
+{
+  mpz_t prime;
+  mpz_t half;
+  mpz_t q;
+  mpz_t exponent;
+  mpz_t generator;
+  unsigned long s;
+} vmgj_sqrtm_ctx;
+
+/*
+ * Initializes the context for the given odd prime. Returns zero if
+ * the modulus is smaller than three, even, or detected not to be a
+ * prime because no quadratic non-residue is found among a number of
+ * candidates quadratic in its bit length, and one otherwise. The
+ * context must be cleared in both cases, but may only be used in the
+ * latter.
+ */
+int
+vmgj_sqrtm_init(vmgj_sqrtm_ctx *ctx, mpz_t odd_prime);
+
+/*
+ * Sets rop to a square root of op modulo the prime of the context and
+ * returns the Legendre symbol of op. The root is the smaller of the
+ * two roots, i.e., it is at most (p - 1) / 2. If op is not a
+ * quadratic residue, then rop is set to zero. The operands may be
+ * the same variable. VMGJ_SQRTM_NOT_PRIME is returned if the
+ * algorithm fails, which shows that the modulus is not a prime, and
+ * the value of rop is then undefined.
+ */
+int
+vmgj_sqrtm(mpz_t rop, mpz_t op, vmgj_sqrtm_ctx *ctx);
+
+/*
+ * Frees the resources of the context.
+ */
+void
+vmgj_sqrtm_clear(vmgj_sqrtm_ctx *ctx);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
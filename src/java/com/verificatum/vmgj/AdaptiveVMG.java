@@ -0,0 +1,723 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.verificatum.vmgj;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatches each call either to {@link BigInteger} or to {@link VMG}
+ * depending on the size of the operands. For small operands the
+ * conversions and the native call may cost more than the computation
+ * itself, in which case the pure Java implementation is faster.
+ *
+ * <p>
+ *
+ * The crossover points are either measured by {@link #calibrate()},
+ * or loaded from a profile written by {@link #store(Path)} on the
+ * same machine. A modular exponentiation or Legendre symbol is
+ * computed natively if the bit length of the modulus is at least the
+ * corresponding crossover point. Exponentiation has separate
+ * crossover points for exponents of at most {@link
+ * #SHORT_EXPONENT_BIT_LENGTH} bits, e.g., exponents in subgroups of
+ * prime order, and for longer exponents, since the cost of the
+ * computation, but not the cost of the conversions, depends on the
+ * bit length of the exponent. A simultaneous exponentiation is
+ * computed natively if the modulus is large enough for {@link
+ * #powm(BigInteger, BigInteger, BigInteger)} with its longest
+ * exponent, or if the number of bases is at least the crossover point
+ * of simultaneous exponentiation.
+ *
+ * <p>
+ *
+ * The number of calls routed to each implementation is counted, so
+ * that the routing can be inspected, e.g., using {@link
+ * #statistics()}.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class AdaptiveVMG {
+
+    /**
+     * Implementations a call can be routed to.
+     */
+    public enum Route {
+
+        /**
+         * Pure Java implementation based on {@link BigInteger}.
+         */
+        JAVA,
+
+        /**
+         * Native implementation invoked through {@link VMG}.
+         */
+        NATIVE
+    }
+
+    /**
+     * Bit lengths of moduli used during calibration.
+     */
+    static final int[] CALIBRATION_BIT_LENGTHS =
+        {64, 128, 256, 512, 1024, 2048};
+
+    /**
+     * Numbers of bases used during calibration of simultaneous
+     * exponentiation.
+     */
+    static final int[] CALIBRATION_LENGTHS = {1, 2, 4, 8, 16, 32};
+
+    /**
+     * Default duration in milliseconds of the timing of each
+     * implementation at each calibration point.
+     */
+    public static final long DEFAULT_CALIBRATION_MILLIS = 10;
+
+    /**
+     * Minimal number of executions of each implementation at each
+     * calibration point.
+     */
+    static final int MIN_EXECUTIONS = 3;
+
+    /**
+     * Maximal bit length of exponents that are considered short,
+     * e.g., exponents in a subgroup of prime order.
+     */
+    public static final int SHORT_EXPONENT_BIT_LENGTH = 256;
+
+    /**
+     * Key of the crossover point of exponentiation in a profile.
+     */
+    static final String POWM_KEY = "powm.crossover";
+
+    /**
+     * Key of the crossover point of exponentiation with short
+     * exponents in a profile.
+     */
+    static final String POWM_SHORT_KEY = "powm.short.crossover";
+
+    /**
+     * Key of the crossover point of simultaneous exponentiation in a
+     * profile.
+     */
+    static final String SPOWM_KEY = "spowm.crossover";
+
+    /**
+     * Key of the crossover point of Legendre symbols in a profile.
+     */
+    static final String LEGENDRE_KEY = "legendre.crossover";
+
+    /**
+     * Minimal bit length of moduli for which exponentiation is
+     * computed natively.
+     */
+    private final int powmCrossover;
+
+    /**
+     * Minimal bit length of moduli for which exponentiation with short
+     * exponents is computed natively.
+     */
+    private final int powmShortCrossover;
+
+    /**
+     * Minimal number of bases for which simultaneous exponentiation
+     * is computed natively for moduli shorter than {@link
+     * #powmCrossover}.
+     */
+    private final int spowmCrossover;
+
+    /**
+     * Minimal bit length of primes for which Legendre symbols are
+     * computed natively.
+     */
+    private final int legendreCrossover;
+
+    /**
+     * Number of calls of each operation routed to each
+     * implementation, indexed by operation and route.
+     */
+    private final LongAdder[][] counts;
+
+    /**
+     * Creates an instance with the given crossover points, where the
+     * crossover point of exponentiation is used for all exponents.
+     *
+     * @param powmCrossover Minimal bit length of moduli for which
+     * exponentiation is computed natively.
+     * @param spowmCrossover Minimal number of bases for which
+     * simultaneous exponentiation is computed natively for moduli
+     * that are too short for native exponentiation.
+     * @param legendreCrossover Minimal bit length of primes for which
+     * Legendre symbols are computed natively.
+     * @throws IllegalArgumentException If a crossover point is
+     * negative.
+     */
+    public AdaptiveVMG(final int powmCrossover,
+                       final int spowmCrossover,
+                       final int legendreCrossover) {
+        this(powmCrossover, powmCrossover, spowmCrossover,
+             legendreCrossover);
+    }
+
+    /**
+     * Creates an instance with the given crossover points.
+     *
+     * @param powmCrossover Minimal bit length of moduli for which
+     * exponentiation is computed natively.
+     * @param powmShortCrossover Minimal bit length of moduli for which
+     * exponentiation with exponents of at most {@link
+     * #SHORT_EXPONENT_BIT_LENGTH} bits is computed natively.
+     * @param spowmCrossover Minimal number of bases for which
+     * simultaneous exponentiation is computed natively for moduli
+     * that are too short for native exponentiation.
+     * @param legendreCrossover Minimal bit length of primes for which
+     * Legendre symbols are computed natively.
+     * @throws IllegalArgumentException If a crossover point is
+     * negative.
+     */
+    public AdaptiveVMG(final int powmCrossover,
+                       final int powmShortCrossover,
+                       final int spowmCrossover,
+                       final int legendreCrossover) {
+        if (powmCrossover < 0 || powmShortCrossover < 0
+            || spowmCrossover < 0 || legendreCrossover < 0) {
+            throw new IllegalArgumentException("Negative crossover point!");
+        }
+        this.powmCrossover = powmCrossover;
+        this.powmShortCrossover = powmShortCrossover;
+        this.spowmCrossover = spowmCrossover;
+        this.legendreCrossover = legendreCrossover;
+
+        final int operations = VMGMonitor.Operation.values().length;
+        final int routes = Route.values().length;
+        this.counts = new LongAdder[operations][routes];
+        for (int i = 0; i < operations; i++) {
+            for (int j = 0; j < routes; j++) {
+                counts[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Creates an instance with crossover points measured using the
+     * default duration of the timing of each calibration point.
+     *
+     * @return Calibrated instance.
+     */
+    public static AdaptiveVMG calibrate() {
+        return calibrate(DEFAULT_CALIBRATION_MILLIS);
+    }
+
+    /**
+     * Creates an instance with crossover points measured by timing
+     * both implementations for a few operand sizes after warming
+     * them up. The total time spent is roughly <code>120 *
+     * millis</code> milliseconds, but never less than needed to
+     * execute each implementation a few times at each point.
+     *
+     * @param millis Duration in milliseconds of the timing of each
+     * implementation at each calibration point.
+     * @return Calibrated instance.
+     */
+    public static AdaptiveVMG calibrate(final long millis) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final boolean[] powmNative =
+            new boolean[CALIBRATION_BIT_LENGTHS.length];
+        final boolean[] powmShortNative =
+            new boolean[CALIBRATION_BIT_LENGTHS.length];
+        final boolean[] legendreNative =
+            new boolean[CALIBRATION_BIT_LENGTHS.length];
+
+        for (int i = 0; i < CALIBRATION_BIT_LENGTHS.length; i++) {
+            final int bitLength = CALIBRATION_BIT_LENGTHS[i];
+            final BigInteger modulus = randomModulus(bitLength, random);
+            final BigInteger basis = new BigInteger(bitLength, random);
+            final BigInteger exponent = new BigInteger(bitLength, random);
+            final BigInteger shortExponent =
+                new BigInteger(SHORT_EXPONENT_BIT_LENGTH, random);
+
+            powmNative[i] =
+                cost(millis, () -> VMG.powm(basis, exponent, modulus))
+                < cost(millis, () -> basis.modPow(exponent, modulus));
+            powmShortNative[i] =
+                cost(millis, () -> VMG.powm(basis, shortExponent, modulus))
+                < cost(millis, () -> basis.modPow(shortExponent, modulus));
+            legendreNative[i] =
+                cost(millis, () -> VMG.legendre(basis, modulus))
+                < cost(millis, () -> jacobi(basis, modulus));
+        }
+
+        final int powmCrossover = crossover(CALIBRATION_BIT_LENGTHS,
+                                            powmNative);
+
+        // Simultaneous exponentiation is only routed by length for
+        // moduli shorter than the crossover point of exponentiation,
+        // so we calibrate using the largest such calibration point.
+        int spowmCrossover = 0;
+        int index = -1;
+        while (index + 1 < CALIBRATION_BIT_LENGTHS.length
+               && CALIBRATION_BIT_LENGTHS[index + 1] < powmCrossover) {
+            index++;
+        }
+        if (index >= 0) {
+            final int bitLength = CALIBRATION_BIT_LENGTHS[index];
+            final BigInteger modulus = randomModulus(bitLength, random);
+            final boolean[] spowmNative =
+                new boolean[CALIBRATION_LENGTHS.length];
+
+            for (int i = 0; i < CALIBRATION_LENGTHS.length; i++) {
+                final BigInteger[] bases =
+                    new BigInteger[CALIBRATION_LENGTHS[i]];
+                final BigInteger[] exponents =
+                    new BigInteger[CALIBRATION_LENGTHS[i]];
+                for (int l = 0; l < bases.length; l++) {
+                    bases[l] = new BigInteger(bitLength, random);
+                    exponents[l] = new BigInteger(bitLength, random);
+                }
+                spowmNative[i] =
+                    cost(millis, () -> VMG.spowm(bases, exponents, modulus))
+                    < cost(millis, () -> spowmJava(bases, exponents,
+                                                   modulus));
+            }
+            spowmCrossover = crossover(CALIBRATION_LENGTHS, spowmNative);
+        }
+
+        return new AdaptiveVMG(powmCrossover,
+                               crossover(CALIBRATION_BIT_LENGTHS,
+                                         powmShortNative),
+                               spowmCrossover,
+                               crossover(CALIBRATION_BIT_LENGTHS,
+                                         legendreNative));
+    }
+
+    /**
+     * Returns a random odd modulus of the given bit length.
+     *
+     * @param bitLength Bit length of modulus.
+     * @param random Source of randomness.
+     * @return Random modulus.
+     */
+    private static BigInteger randomModulus(final int bitLength,
+                                            final SecureRandom random) {
+        return new BigInteger(bitLength, random)
+            .setBit(bitLength - 1).setBit(0);
+    }
+
+    /**
+     * Returns the average time in nanoseconds of an execution of the
+     * given task, which is executed repeatedly for at least the given
+     * number of milliseconds and at least {@link #MIN_EXECUTIONS}
+     * times. The task is warmed up during the same amount of time
+     * before it is timed.
+     *
+     * @param millis Duration of the timing.
+     * @param task Task to be timed.
+     * @return Average time of an execution.
+     */
+    private static double cost(final long millis, final Runnable task) {
+        final long nanos = millis * 1000000L;
+        for (int warmUp = 0; warmUp < 2; warmUp++) {
+            final long start = System.nanoTime();
+            long elapsed = 0;
+            long i = 0;
+            while (elapsed < nanos || i < MIN_EXECUTIONS) {
+                task.run();
+                i++;
+                elapsed = System.nanoTime() - start;
+            }
+            if (warmUp == 1) {
+                return (double) elapsed / i;
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Returns the smallest calibration point such that the native
+     * implementation is faster at this point and at all larger
+     * calibration points, or the largest integer if there is no such
+     * point. The smallest point is replaced by zero, since we do not
+     * know anything about smaller operands.
+     *
+     * @param points Increasing calibration points.
+     * @param nativeFaster Decides if the native implementation is
+     * faster at each calibration point.
+     * @return Crossover point.
+     */
+    static int crossover(final int[] points, final boolean[] nativeFaster) {
+        int i = points.length;
+        while (i > 0 && nativeFaster[i - 1]) {
+            i--;
+        }
+        if (i == 0) {
+            return 0;
+        } else if (i == points.length) {
+            return Integer.MAX_VALUE;
+        } else {
+            return points[i];
+        }
+    }
+
+    /**
+     * Loads crossover points from a profile written by {@link
+     * #store(Path)}. If the profile has no crossover point for short
+     * exponents, then the crossover point of exponentiation is used
+     * for all exponents.
+     *
+     * @param path Profile.
+     * @return Instance with the crossover points of the profile.
+     * @throws IOException If the profile can not be read.
+     * @throws IllegalArgumentException If the profile is malformed.
+     */
+    public static AdaptiveVMG load(final Path path) throws IOException {
+        final Properties profile = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            profile.load(in);
+        }
+        final int powmCrossover = parse(profile, POWM_KEY);
+        int powmShortCrossover = powmCrossover;
+        if (profile.getProperty(POWM_SHORT_KEY) != null) {
+            powmShortCrossover = parse(profile, POWM_SHORT_KEY);
+        }
+        return new AdaptiveVMG(powmCrossover,
+                               powmShortCrossover,
+                               parse(profile, SPOWM_KEY),
+                               parse(profile, LEGENDRE_KEY));
+    }
+
+    /**
+     * Parses the crossover point with the given key in a profile.
+     *
+     * @param profile Profile.
+     * @param key Key of the crossover point.
+     * @return Crossover point.
+     * @throws IllegalArgumentException If the value is missing or is
+     * not an integer.
+     */
+    private static int parse(final Properties profile, final String key) {
+        final String value = profile.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + key + "!");
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (final NumberFormatException nfe) {
+            throw new IllegalArgumentException("Malformed " + key + "!",
+                                               nfe);
+        }
+    }
+
+    /**
+     * Writes the crossover points of this instance to a profile that
+     * can be read using {@link #load(Path)}.
+     *
+     * @param path Destination of the profile.
+     * @throws IOException If the profile can not be written.
+     */
+    public void store(final Path path) throws IOException {
+        final Properties profile = new Properties();
+        profile.setProperty(POWM_KEY, Integer.toString(powmCrossover));
+        profile.setProperty(POWM_SHORT_KEY,
+                            Integer.toString(powmShortCrossover));
+        profile.setProperty(SPOWM_KEY, Integer.toString(spowmCrossover));
+        profile.setProperty(LEGENDRE_KEY,
+                            Integer.toString(legendreCrossover));
+        try (OutputStream out = Files.newOutputStream(path)) {
+            profile.store(out, "VMGJ crossover points");
+        }
+    }
+
+    /**
+     * Returns the minimal bit length of moduli for which
+     * exponentiation is computed natively.
+     *
+     * @return Crossover point.
+     */
+    public int powmCrossover() {
+        return powmCrossover;
+    }
+
+    /**
+     * Returns the minimal bit length of moduli for which
+     * exponentiation with exponents of at most {@link
+     * #SHORT_EXPONENT_BIT_LENGTH} bits is computed natively.
+     *
+     * @return Crossover point.
+     */
+    public int powmShortCrossover() {
+        return powmShortCrossover;
+    }
+
+    /**
+     * Returns the crossover point of exponentiation for exponents of
+     * the given bit length.
+     *
+     * @param exponentBitLength Bit length of exponent.
+     * @return Crossover point.
+     */
+    private int powmCrossover(final int exponentBitLength) {
+        if (exponentBitLength <= SHORT_EXPONENT_BIT_LENGTH) {
+            return powmShortCrossover;
+        } else {
+            return powmCrossover;
+        }
+    }
+
+    /**
+     * Returns the minimal number of bases for which simultaneous
+     * exponentiation is computed natively for moduli that are too
+     * short for native exponentiation.
+     *
+     * @return Crossover point.
+     */
+    public int spowmCrossover() {
+        return spowmCrossover;
+    }
+
+    /**
+     * Returns the minimal bit length of primes for which Legendre
+     * symbols are computed natively.
+     *
+     * @return Crossover point.
+     */
+    public int legendreCrossover() {
+        return legendreCrossover;
+    }
+
+    /**
+     * Counts a call and returns its route.
+     *
+     * @param operation Operation of the call.
+     * @param nativeRoute Decides if the call is routed to the native
+     * implementation.
+     * @return Route of the call.
+     */
+    private Route route(final VMGMonitor.Operation operation,
+                        final boolean nativeRoute) {
+        final Route route = nativeRoute ? Route.NATIVE : Route.JAVA;
+        counts[operation.ordinal()][route.ordinal()].increment();
+        return route;
+    }
+
+    /**
+     * Computes a modular exponentiation.
+     *
+     * @param basis Basis integer.
+     * @param exponent Exponent used to compute power.
+     * @param modulus Modulus.
+     * @return Basis to the power of <code>exponent</code> modulo
+     * <code>modulus</code>.
+     */
+    public BigInteger powm(final BigInteger basis,
+                           final BigInteger exponent,
+                           final BigInteger modulus) {
+        if (route(VMGMonitor.Operation.POWM,
+                  modulus.bitLength()
+                  >= powmCrossover(exponent.bitLength())) == Route.NATIVE) {
+            return VMG.powm(basis, exponent, modulus);
+        } else {
+            return basis.modPow(exponent, modulus);
+        }
+    }
+
+    /**
+     * Computes a simultaneous modular exponentiation.
+     *
+     * @param bases Basis elements.
+     * @param exponents Exponents used to compute power.
+     * @param modulus Modulus.
+     * @return Product of the bases to the powers of
+     * <code>exponents</code> modulo <code>modulus</code>.
+     * @throws IllegalArgumentException If the arrays have different
+     * lengths.
+     */
+    public BigInteger spowm(final BigInteger[] bases,
+                            final BigInteger[] exponents,
+                            final BigInteger modulus) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Arrays have different "
+                                               + "lengths!");
+        }
+        final boolean nativeRoute = modulus.bitLength()
+            >= powmCrossover(VMG.maxBitLength(exponents))
+            || bases.length >= spowmCrossover;
+        if (route(VMGMonitor.Operation.SPOWM, nativeRoute) == Route.NATIVE) {
+            return VMG.spowm(bases, exponents, modulus);
+        } else {
+            return spowmJava(bases, exponents, modulus);
+        }
+    }
+
+    /**
+     * Computes a simultaneous modular exponentiation using {@link
+     * BigInteger}.
+     *
+     * @param bases Basis elements.
+     * @param exponents Exponents used to compute power.
+     * @param modulus Modulus.
+     * @return Product of the bases to the powers of
+     * <code>exponents</code> modulo <code>modulus</code>.
+     */
+    static BigInteger spowmJava(final BigInteger[] bases,
+                                final BigInteger[] exponents,
+                                final BigInteger modulus) {
+        BigInteger result = BigInteger.ONE.mod(modulus);
+        for (int i = 0; i < bases.length; i++) {
+            result = result.multiply(bases[i].modPow(exponents[i], modulus))
+                .mod(modulus);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Legendre symbol of the given value modulo the given
+     * odd prime.
+     *
+     * @param value Integer to be tested.
+     * @param oddPrime An odd prime modulus.
+     * @return Legendre symbol of <code>value</code> modulo
+     * <code>oddPrime</code>.
+     */
+    public int legendre(final BigInteger value, final BigInteger oddPrime) {
+        if (route(VMGMonitor.Operation.LEGENDRE,
+                  oddPrime.bitLength() >= legendreCrossover)
+            == Route.NATIVE) {
+            return VMG.legendre(value, oddPrime);
+        } else {
+            return jacobi(value, oddPrime);
+        }
+    }
+
+    /**
+     * Returns the Jacobi symbol of the given value modulo the given
+     * odd positive modulus using {@link BigInteger}, which equals the
+     * Legendre symbol if the modulus is prime.
+     *
+     * @param value Integer.
+     * @param modulus Odd positive modulus.
+     * @return Jacobi symbol of <code>value</code> modulo
+     * <code>modulus</code>.
+     */
+    static int jacobi(final BigInteger value, final BigInteger modulus) {
+        BigInteger a = value.mod(modulus);
+        BigInteger n = modulus;
+        int result = 1;
+
+        while (a.signum() != 0) {
+
+            // Remove factors of two using (2/n) = (-1)^((n^2-1)/8).
+            final int zeros = a.getLowestSetBit();
+            a = a.shiftRight(zeros);
+            final int nMod8 = n.intValue() & 7;
+            if ((zeros & 1) == 1 && (nMod8 == 3 || nMod8 == 5)) {
+                result = -result;
+            }
+
+            // Quadratic reciprocity for odd a and n.
+            if ((a.intValue() & 3) == 3 && (nMod8 & 3) == 3) {
+                result = -result;
+            }
+            final BigInteger tmp = a;
+            a = n.mod(tmp);
+            n = tmp;
+        }
+        return n.equals(BigInteger.ONE) ? result : 0;
+    }
+
+    /**
+     * Returns the number of calls of the given operation routed to
+     * the given implementation since this instance was created or
+     * the statistics were reset.
+     *
+     * @param operation Operation, i.e., exponentiation, simultaneous
+     * exponentiation, or Legendre symbol.
+     * @param route Implementation.
+     * @return Number of calls.
+     */
+    public long count(final VMGMonitor.Operation operation,
+                      final Route route) {
+        return counts[operation.ordinal()][route.ordinal()].sum();
+    }
+
+    /**
+     * Resets the routing statistics.
+     */
+    public void resetStatistics() {
+        for (final LongAdder[] row : counts) {
+            for (final LongAdder count : row) {
+                count.reset();
+            }
+        }
+    }
+
+    /**
+     * Returns a description of the crossover points and the routing
+     * statistics of this instance.
+     *
+     * @return Routing statistics.
+     */
+    public String statistics() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %12s %12s %12s%n", "operation",
+                                "crossover", "java", "native"));
+        final VMGMonitor.Operation[] operations = {
+            VMGMonitor.Operation.POWM,
+            VMGMonitor.Operation.SPOWM,
+            VMGMonitor.Operation.LEGENDRE
+        };
+        final int[] crossovers = {
+            powmCrossover, spowmCrossover, legendreCrossover
+        };
+        for (int i = 0; i < operations.length; i++) {
+            sb.append(String.format("%-10s %12d %12d %12d%n",
+                                    operations[i].name()
+                                    .toLowerCase(Locale.ROOT),
+                                    crossovers[i],
+                                    count(operations[i], Route.JAVA),
+                                    count(operations[i], Route.NATIVE)));
+        }
+        sb.append(String.format("powm crossover for exponents of at most "
+                                + "%d bits: %d%n",
+                                SHORT_EXPONENT_BIT_LENGTH,
+                                powmShortCrossover));
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return statistics();
+    }
+}
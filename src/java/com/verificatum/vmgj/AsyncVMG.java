@@ -0,0 +1,360 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade of {@link VMG} and {@link FpowmTab}. The native
+ * calls are executed by a dedicated and bounded pool of platform
+ * threads, and the results are returned as
+ * <code>CompletableFuture</code>. A thread that waits for a result,
+ * e.g., a virtual thread, is then blocked in Java code rather than in
+ * a long native call, which would pin its carrier thread.
+ *
+ * <p>
+ *
+ * The number of submitted tasks that are not yet completed is
+ * bounded. A caller that submits a task when this bound is reached
+ * is blocked until a task completes, which gives backpressure. A
+ * batch is split into one task for each worker thread, and the
+ * results of a batch are returned in the same order as the inputs
+ * when all tasks of the batch are completed.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class AsyncVMG implements AutoCloseable {
+
+    /**
+     * Default maximal number of pending tasks for each worker thread.
+     */
+    static final int DEFAULT_PENDING_PER_THREAD = 4;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * Executor of native calls.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Permits for submitting tasks.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Worker threads created by this instance.
+     */
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an instance with one worker thread for each available
+     * processor.
+     */
+    public AsyncVMG() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an instance with the given number of worker threads.
+     *
+     * @param threads Number of worker threads.
+     */
+    public AsyncVMG(final int threads) {
+        this(threads, DEFAULT_PENDING_PER_THREAD * threads);
+    }
+
+    /**
+     * Creates an instance with the given number of worker threads and
+     * bound on the number of pending tasks.
+     *
+     * @param threads Number of worker threads.
+     * @param maxPending Maximal number of submitted tasks that are not
+     * completed.
+     * @throws IllegalArgumentException If a parameter is not
+     * positive.
+     */
+    public AsyncVMG(final int threads, final int maxPending) {
+        if (threads <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Non-positive number of "
+                                               + "threads or pending "
+                                               + "tasks!");
+        }
+        this.threads = threads;
+        this.permits = new Semaphore(maxPending, true);
+
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory factory = runnable -> {
+            final Thread thread =
+                new Thread(runnable, "vmgj-native-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            workers.add(thread);
+            return thread;
+        };
+
+        // The queue is effectively bounded by the permits.
+        this.executor =
+            new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                   factory);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return Number of worker threads.
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Returns true if and only if the current thread is a worker
+     * thread of this instance. A worker thread must not block on the
+     * completion of tasks submitted to this instance.
+     *
+     * @return True if the current thread is a worker thread.
+     */
+    boolean isWorker() {
+        return workers.contains(Thread.currentThread());
+    }
+
+    /**
+     * Submits a task to the worker threads. This blocks until a
+     * permit is available.
+     *
+     * @param <T> Type of result.
+     * @param task Task to be executed.
+     * @return Future result of the task.
+     */
+    public <T> CompletableFuture<T> submit(final Callable<T> task) {
+
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        try {
+            permits.acquire();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(ie);
+            return future;
+        }
+
+        final Runnable runnable = () -> {
+            try {
+                future.complete(task.call());
+            } catch (final Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        };
+
+        try {
+            executor.execute(runnable);
+        } catch (final RuntimeException re) {
+            permits.release();
+            future.completeExceptionally(re);
+        }
+        return future;
+    }
+
+    /**
+     * Computes a modular exponentiation asynchronously.
+     *
+     * @param basis Basis integer.
+     * @param exponent Exponent used to compute power.
+     * @param modulus Modulus.
+     * @return Future power as computed by {@link
+     * VMG#powm(BigInteger, BigInteger, BigInteger)}.
+     */
+    public CompletableFuture<BigInteger> powm(final BigInteger basis,
+                                              final BigInteger exponent,
+                                              final BigInteger modulus) {
+        return submit(() -> VMG.powm(basis, exponent, modulus));
+    }
+
+    /**
+     * Computes a simultaneous modular exponentiation asynchronously.
+     *
+     * @param bases Basis elements.
+     * @param exponents Exponent used to compute power.
+     * @param modulus Modulus.
+     * @return Future product as computed by {@link
+     * VMG#spowm(BigInteger[], BigInteger[], BigInteger)}.
+     */
+    public CompletableFuture<BigInteger> spowm(final BigInteger[] bases,
+                                               final BigInteger[] exponents,
+                                               final BigInteger modulus) {
+        return submit(() -> VMG.spowm(bases, exponents, modulus));
+    }
+
+    /**
+     * Computes a fixed-basis modular exponentiation asynchronously.
+     *
+     * @param table Precomputed table.
+     * @param exponent Exponent used in modular exponentiation.
+     * @return Future power as computed by {@link
+     * FpowmTab#fpowm(BigInteger)}.
+     */
+    public CompletableFuture<BigInteger> fpowm(final FpowmTab table,
+                                               final BigInteger exponent) {
+        return submit(() -> table.fpowm(exponent));
+    }
+
+    /**
+     * Computes a Legendre symbol asynchronously.
+     *
+     * @param value Integer to be tested.
+     * @param oddPrime An odd prime modulus.
+     * @return Future Legendre symbol as computed by {@link
+     * VMG#legendre(BigInteger, BigInteger)}.
+     */
+    public CompletableFuture<Integer> legendre(final BigInteger value,
+                                               final BigInteger oddPrime) {
+        return submit(() -> VMG.legendre(value, oddPrime));
+    }
+
+    /**
+     * Computes a batch of modular exponentiations asynchronously,
+     * i.e., each basis is raised to the corresponding exponent.
+     *
+     * @param bases Basis integers.
+     * @param exponents Exponents used to compute powers.
+     * @param modulus Modulus.
+     * @return Future powers in the order of the inputs.
+     * @throws IllegalArgumentException If the arrays have different
+     * lengths.
+     */
+    public CompletableFuture<BigInteger[]> powm(final BigInteger[] bases,
+                                                final BigInteger[] exponents,
+                                                final BigInteger modulus) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Arrays have different "
+                                               + "lengths!");
+        }
+        return batch(bases.length, (results, start, end) -> {
+            for (int i = start; i < end; i++) {
+                results[i] = VMG.powm(bases[i], exponents[i], modulus);
+            }
+        });
+    }
+
+    /**
+     * Computes a batch of fixed-basis modular exponentiations
+     * asynchronously.
+     *
+     * @param table Precomputed table.
+     * @param exponents Exponents used in modular exponentiations.
+     * @return Future powers in the order of the exponents.
+     */
+    public CompletableFuture<BigInteger[]> fpowm(final FpowmTab table,
+                                                 final BigInteger[] exponents) {
+        return batch(exponents.length, (results, start, end) -> {
+            for (int i = start; i < end; i++) {
+                results[i] = table.fpowm(exponents[i]);
+            }
+        });
+    }
+
+    /**
+     * Computation of a contiguous part of a batch.
+     */
+    interface Chunk {
+
+        /**
+         * Computes the results with indices in the given range.
+         *
+         * @param results Destination of results.
+         * @param start Index of first result.
+         * @param end Index following the last result.
+         */
+        void compute(BigInteger[] results, int start, int end);
+    }
+
+    /**
+     * Splits a batch into one task for each worker thread.
+     *
+     * @param size Number of results.
+     * @param chunk Computation of a contiguous part of the batch.
+     * @return Future results, which completes when all tasks are
+     * completed.
+     */
+    private CompletableFuture<BigInteger[]> batch(final int size,
+                                                  final Chunk chunk) {
+
+        final BigInteger[] results = new BigInteger[size];
+        final int chunkSize = Math.max(1, (size + threads - 1) / threads);
+        final int numberOfChunks = (size + chunkSize - 1) / chunkSize;
+
+        final CompletableFuture<?>[] futures =
+            new CompletableFuture<?>[numberOfChunks];
+
+        for (int j = 0; j < numberOfChunks; j++) {
+
+            final int start = j * chunkSize;
+            final int end = Math.min(size, start + chunkSize);
+
+            futures[j] = submit(() -> {
+                chunk.compute(results, start, end);
+                return null;
+            });
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(v -> results);
+    }
+
+    /**
+     * Shuts down the worker threads after all submitted tasks are
+     * completed and waits for this to happen.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -76,12 +76,15 @@ public final class BenchVMG {
     /**
      * Times exponentiation.
      *
+     * @param backend Backend used to invoke the native code.
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
      * @return Number of exponentiations performed.
      */
-    protected static long time_powm(final int bitLength, final long milliSecs) {
+    protected static long time_powm(final VMGBackend backend,
+                                    final int bitLength,
+                                    final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
 
@@ -100,13 +103,15 @@ public final class BenchVMG {
             exponents[l] = new BigInteger(bitLength, random);
         }
 
-        // Time optimized code.
+        // Time optimized code including conversions.
         final long t = System.currentTimeMillis();
         long i = 0;
         int l = 0;
         while (!done(t, milliSecs)) {
 
-            VMG.powm(basis, exponents[l], modulus);
+            new BigInteger(backend.powm(basis.toByteArray(),
+                                        exponents[l].toByteArray(),
+                                        modulus.toByteArray()));
 
             l = (l + 1) % len;
 
@@ -118,12 +123,14 @@ public final class BenchVMG {
     /**
      * Times simultaneous exponentiation.
      *
+     * @param backend Backend used to invoke the native code.
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
      * @return Number of simultaneous exponentiations performed.
      */
-    protected static long time_spowm(final int bitLength,
+    protected static long time_spowm(final VMGBackend backend,
+                                     final int bitLength,
                                      final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
@@ -149,22 +156,237 @@ public final class BenchVMG {
         long i = 0;
         while (!done(t, milliSecs)) {
 
-            VMG.spowm(bases, exponents, modulus);
+            new BigInteger(backend.spowm(VMG.convert(bases),
+                                         VMG.convert(exponents),
+                                         modulus.toByteArray()));
 
             i++;
         }
         return i * len;
     }
 
+    /**
+     * Times simultaneous exponentiation of packed vectors.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of simultaneous exponentiations performed.
+     */
+    protected static long time_spowm_vec(final int bitLength,
+                                         final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        // Generate random modulus.
+        BigInteger modulus = new BigInteger(bitLength, random);
+        modulus = modulus.setBit(bitLength - 1);
+
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
+
+        for (int l = 0; l < len; l++) {
+            bases[l] = new BigInteger(bitLength, random);
+            bases[l] = bases[l].setBit(bitLength - 1);
+
+            exponents[l] = new BigInteger(bitLength, random);
+        }
+
+        final IntegerVector vbases = new IntegerVector(bases);
+        final IntegerVector vexponents = new IntegerVector(exponents);
+
+        final long t = System.currentTimeMillis();
+
+        long i = 0;
+        while (!done(t, milliSecs)) {
+
+            VMG.spowm(vbases, vexponents, modulus);
+
+            i++;
+        }
+        return i * len;
+    }
+
+    /**
+     * Times computation of modular square roots of packed vectors
+     * modulo a prime congruent to one modulo four, i.e., using the
+     * Tonelli-Shanks algorithm.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of square roots computed.
+     */
+    protected static long time_sqrtm_vec(final int bitLength,
+                                         final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        BigInteger prime;
+        do {
+            prime = BigInteger.probablePrime(bitLength, random);
+        } while (prime.testBit(1));
+
+        // Squares, so that each root is computed.
+        final BigInteger[] values = new BigInteger[len];
+        for (int l = 0; l < len; l++) {
+            values[l] = new BigInteger(bitLength, random).pow(2).mod(prime);
+        }
+        final IntegerVector vvalues = new IntegerVector(values);
+        final int[] symbols = new int[len];
+
+        final long t = System.currentTimeMillis();
+
+        long i = 0;
+        while (!done(t, milliSecs)) {
+
+            VMG.sqrtm(vvalues, prime, symbols);
+
+            i++;
+        }
+        return i * len;
+    }
+
+    /**
+     * Times exponentiation modulo a product of two primes using the
+     * Chinese remainder theorem.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of exponentiations performed.
+     */
+    protected static long time_crt_powm(final int bitLength,
+                                        final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        final BigInteger p = BigInteger.probablePrime(bitLength / 2, random);
+        final BigInteger q = BigInteger.probablePrime(bitLength / 2, random);
+        final CrtContext crt = new CrtContext(p, q);
+
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
+
+        for (int l = 0; l < len; l++) {
+            bases[l] = new BigInteger(bitLength, random);
+            exponents[l] = new BigInteger(bitLength, random);
+        }
+
+        final long t = System.currentTimeMillis();
+        long i = 0;
+        int l = 0;
+        while (!done(t, milliSecs)) {
+
+            crt.powm(bases[l], exponents[l]);
+
+            l = (l + 1) % len;
+
+            i++;
+        }
+        crt.free();
+        return i;
+    }
+
+    /**
+     * Times exponentiation with exponents of the bit length of the
+     * modulus in a subgroup of 256-bit order, i.e., with exponents
+     * reduced modulo the order.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of exponentiations performed.
+     */
+    protected static long time_group_powm(final int bitLength,
+                                          final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        // The running time does not depend on the bases belonging to
+        // the subgroup, so we do not generate a proper group.
+        final BigInteger modulus =
+            new BigInteger(bitLength, random).setBit(bitLength - 1).setBit(0);
+        final BigInteger order = BigInteger.probablePrime(256, random);
+        final GroupContext group = new GroupContext(modulus, order);
+
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
+
+        for (int l = 0; l < len; l++) {
+            bases[l] = new BigInteger(bitLength, random).mod(modulus);
+            exponents[l] = new BigInteger(bitLength, random);
+        }
+
+        final long t = System.currentTimeMillis();
+        long i = 0;
+        int l = 0;
+        while (!done(t, milliSecs)) {
+
+            group.powm(bases[l], exponents[l]);
+
+            l = (l + 1) % len;
+
+            i++;
+        }
+        group.free();
+        return i;
+    }
+
+    /**
+     * Times precomputation of fixed-basis exponentiation tables.
+     *
+     * @param parallelism Number of threads used for precomputation.
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of tables computed.
+     */
+    protected static long time_fpowm_precomp(final int parallelism,
+                                             final int bitLength,
+                                             final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        // Generate random modulus.
+        BigInteger modulus = new BigInteger(bitLength, random);
+        modulus = modulus.setBit(bitLength - 1);
+
+        BigInteger basis = new BigInteger(bitLength, random);
+        basis = basis.setBit(bitLength - 1);
+
+        final long t = System.currentTimeMillis();
+
+        long i = 0;
+        while (!done(t, milliSecs)) {
+
+            new FpowmTab(basis, modulus, 16, bitLength, parallelism, false)
+                .free();
+
+            i++;
+        }
+        return i;
+    }
+
     /**
      * Times fixed-basis exponentiation.
      *
+     * @param backend Backend used to invoke the native code.
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
      * @return Number of fixed-basis exponentiations performed.
      */
-    protected static long time_fpowm(final int bitLength,
+    protected static long time_fpowm(final VMGBackend backend,
+                                     final int bitLength,
                                      final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
@@ -184,45 +406,218 @@ public final class BenchVMG {
             exponents[l] = new BigInteger(bitLength, random);
         }
 
-        final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
+        final long tablePtr = backend.fpowm_precomp(basis.toByteArray(),
+                                                    modulus.toByteArray(),
+                                                    16,
+                                                    bitLength,
+                                                    1,
+                                                    false);
 
-        // Time optimized code.
+        // Time optimized code including conversions.
         final long t = System.currentTimeMillis();
         long i = 0;
         int l = 0;
         while (!done(t, milliSecs)) {
 
-            tab.fpowm(exponents[l]);
+            new BigInteger(backend.fpowm(tablePtr,
+                                         exponents[l].toByteArray()));
 
             l = (l + 1) % len;
 
             i++;
         }
+        backend.fpowm_clear(tablePtr);
+
         return i;
     }
 
     /**
-     * Times modular arithmetic and prints the results.
+     * Times fixed-basis exponentiation of pairs of bases with a
+     * shared exponent, e.g., as in El Gamal encryption.
      *
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
+     * @return Number of pairs of fixed-basis exponentiations
+     * performed.
      */
-    public static void time_modulus(final int bitLength, final int milliSecs) {
+    protected static long time_fpowm_multi(final int bitLength,
+                                           final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        // Generate random modulus.
+        BigInteger modulus = new BigInteger(bitLength, random);
+        modulus = modulus.setBit(bitLength - 1);
+
+        final BigInteger[] bases = new BigInteger[2];
+        for (int j = 0; j < bases.length; j++) {
+            bases[j] = new BigInteger(bitLength, random).setBit(bitLength - 1);
+        }
+
+        final BigInteger[] exponents = new BigInteger[len];
+        for (int l = 0; l < len; l++) {
+            exponents[l] = new BigInteger(bitLength, random);
+        }
+        final IntegerVector vexponents = new IntegerVector(exponents);
+
+        final MultiFpowmTab tab =
+            new MultiFpowmTab(bases, modulus, bitLength);
+
+        final long t = System.currentTimeMillis();
+        long i = 0;
+        while (!done(t, milliSecs)) {
+
+            tab.fpowm(vexponents);
+
+            i += len;
+        }
+        tab.free();
+
+        return i;
+    }
+
+    /**
+     * Times computation of Legendre symbols.
+     *
+     * @param backend Backend used to invoke the native code.
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     * @return Number of Legendre symbols computed.
+     */
+    protected static long time_legendre(final VMGBackend backend,
+                                        final int bitLength,
+                                        final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 100;
+
+        final BigInteger prime = BigInteger.probablePrime(bitLength, random);
+
+        final BigInteger[] values = new BigInteger[len];
+
+        for (int l = 0; l < len; l++) {
+            values[l] = new BigInteger(bitLength, random);
+        }
+
+        // Time optimized code including conversions.
+        final long t = System.currentTimeMillis();
+        long i = 0;
+        int l = 0;
+        while (!done(t, milliSecs)) {
+
+            backend.legendre(values[l].toByteArray(), prime.toByteArray());
+
+            l = (l + 1) % len;
+
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Times modular arithmetic using the given backend and prints the
+     * results.
+     *
+     * @param backend Backend used to invoke the native code.
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    public static void time_modulus(final VMGBackend backend,
+                                    final int bitLength,
+                                    final int milliSecs) {
 
         final String f =
-            "%nTiming modular arithmetic: %d bitlength (%d ms/function)";
+            "%nTiming modular arithmetic: %d bitlength (%d ms/function, %s)";
 
-        System.out.println(String.format(f, bitLength, milliSecs));
+        System.out.println(String.format(f, bitLength, milliSecs,
+                                         backend.name()));
         System.out.println(
             "----------------------------------------------------------------");
 
         System.out.println(String.format("%12d exponentiations",
-                                         time_powm(bitLength, milliSecs)));
+                                         time_powm(backend,
+                                                   bitLength,
+                                                   milliSecs)));
         System.out.println(String.format("%12d simultaneous exponentiations",
-                                         time_spowm(bitLength, milliSecs)));
+                                         time_spowm(backend,
+                                                    bitLength,
+                                                    milliSecs)));
         System.out.println(String.format("%12d fixed-basis exponentiations",
-                                         time_fpowm(bitLength, milliSecs)));
+                                         time_fpowm(backend,
+                                                    bitLength,
+                                                    milliSecs)));
+        System.out.println(String.format("%12d Legendre symbols",
+                                         time_legendre(backend,
+                                                       bitLength,
+                                                       milliSecs)));
+    }
+
+    /**
+     * Times modular arithmetic using each available backend and
+     * prints the results.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    public static void time_modulus(final int bitLength, final int milliSecs) {
+
+        time_modulus(VMG.JNI, bitLength, milliSecs);
+        if (VMG.FFM != null) {
+            time_modulus(VMG.FFM, bitLength, milliSecs);
+        }
+
+        System.out.println(String.format("%12d simultaneous exponentiations "
+                                         + "(packed vectors)",
+                                         time_spowm_vec(bitLength,
+                                                        milliSecs)));
+
+        System.out.println(String.format("%12d pairs of fixed-basis "
+                                         + "exponentiations (shared "
+                                         + "exponent)",
+                                         time_fpowm_multi(bitLength,
+                                                          milliSecs)));
+
+        System.out.println(String.format("%12d square roots (packed vectors)",
+                                         time_sqrtm_vec(bitLength,
+                                                        milliSecs)));
+
+        System.out.println(String.format("%12d exponentiations (CRT)",
+                                         time_crt_powm(bitLength,
+                                                       milliSecs)));
+
+        System.out.println(String.format("%12d exponentiations (subgroup of "
+                                         + "256-bit order)",
+                                         time_group_powm(bitLength,
+                                                         milliSecs)));
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(String.format("%12d fixed-basis precomputations "
+                                         + "(1 thread)",
+                                         time_fpowm_precomp(1, bitLength,
+                                                            milliSecs)));
+        System.out.println(String.format("%12d fixed-basis precomputations "
+                                         + "(%d threads)",
+                                         time_fpowm_precomp(cores, bitLength,
+                                                            milliSecs),
+                                         cores));
+
+        final AdaptiveVMG adaptive = AdaptiveVMG.calibrate();
+        System.out.println(String.format("%nCrossover points from "
+                                         + "BigInteger to native code: "
+                                         + "powm %d bits (%d bits for "
+                                         + "short exponents), spowm %d "
+                                         + "bases, legendre %d bits",
+                                         adaptive.powmCrossover(),
+                                         adaptive.powmShortCrossover(),
+                                         adaptive.spowmCrossover(),
+                                         adaptive.legendreCrossover()));
     }
 
     /**
@@ -268,6 +663,9 @@ public final class BenchVMG {
 + "\n"
 + "The code makes calls to the GNU Multiple Precision Arithmetic\n"
 + "library (GMP) and GMP Modular Exponentiation Extension (VMG).\n"
++ "\n"
++ "The timings are repeated for each available backend, i.e., JNI\n"
++ "and the Foreign Function and Memory API (FFM) if supported.\n"
 + "================================================================";
 
         System.out.println(s);
@@ -0,0 +1,431 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Bulk operations from file to file. A file holds integers in the
+ * packed format of {@link IntegerVector}, i.e., each integer is
+ * stored as a fixed number of bytes in unsigned big-endian byte
+ * order. The files are memory-mapped in chunks that are processed
+ * natively by the worker threads of an {@link AsyncVMG}, so no
+ * integer is ever represented as a Java object. A chunk is mapped by
+ * the worker thread that processes it, but the mapping is only
+ * released when its buffer is garbage collected, so the amount of
+ * mapped memory is not bounded by the number of worker threads.
+ *
+ * <p>
+ *
+ * A bulk operation blocks until all of its chunks are processed. It
+ * must not be invoked from a worker thread of the {@link AsyncVMG}
+ * that it uses, since the operation would then wait for chunks that
+ * can never be processed.
+ *
+ * <p>
+ *
+ * Each output file is overwritten and holds the results in the same
+ * order as the inputs with the number of bytes needed to represent
+ * the modulus.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class BulkVMG {
+
+    /**
+     * Default number of integers in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Processes a chunk of integers.
+     */
+    @FunctionalInterface
+    interface Chunk {
+
+        /**
+         * Processes the given chunk.
+         *
+         * @param first Index of the first integer of the chunk.
+         * @param count Number of integers in the chunk.
+         * @throws IOException If the files can not be mapped.
+         */
+        void process(long first, int count) throws IOException;
+    }
+
+    /**
+     * Executor of chunks.
+     */
+    private final AsyncVMG async;
+
+    /**
+     * Number of integers in a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Creates an instance that processes chunks of the default size.
+     *
+     * @param async Executor of chunks.
+     */
+    public BulkVMG(final AsyncVMG async) {
+        this(async, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param async Executor of chunks.
+     * @param chunkSize Number of integers in a chunk.
+     * @throws IllegalArgumentException If the chunk size is not
+     * positive.
+     */
+    public BulkVMG(final AsyncVMG async, final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Non-positive chunk size!");
+        }
+        this.async = async;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Raises each basis of a file to the power of the corresponding
+     * exponent of another file.
+     *
+     * @param bases File of packed basis integers.
+     * @param basesWidth Number of bytes of each basis.
+     * @param exponents File of packed exponents.
+     * @param exponentsWidth Number of bytes of each exponent.
+     * @param modulus Modulus.
+     * @param output File where packed powers are written.
+     * @return Number of integers processed.
+     * @throws IOException If the files can not be read or written.
+     * @throws IllegalArgumentException If the files have different
+     * numbers of integers or a file size is not a multiple of the
+     * width.
+     * @throws IllegalStateException If this is invoked from a worker
+     * thread of the executor.
+     */
+    public long powm(final Path bases,
+                     final int basesWidth,
+                     final Path exponents,
+                     final int exponentsWidth,
+                     final BigInteger modulus,
+                     final Path output) throws IOException {
+        final int width = IntegerVector.byteLength(modulus.bitLength());
+        final byte[] nativeModulus = modulus.toByteArray();
+
+        try (FileChannel in = FileChannel.open(bases, StandardOpenOption.READ);
+             FileChannel exps = FileChannel.open(exponents,
+                                                 StandardOpenOption.READ);
+             FileChannel out = openOutput(output)) {
+
+            final long count = count(in, basesWidth);
+            if (count(exps, exponentsWidth) != count) {
+                throw new IllegalArgumentException("Files have different "
+                                                   + "numbers of integers!");
+            }
+
+            run(VMGMonitor.Operation.POWM, count, modulus.bitLength(),
+                8 * exponentsWidth, (first, n) -> {
+                    VMG.powm_buf(map(in, first, n, basesWidth), basesWidth,
+                                 map(exps, first, n, exponentsWidth),
+                                 exponentsWidth,
+                                 nativeModulus,
+                                 mapOutput(out, first, n, width), width, n);
+                });
+            return count;
+        }
+    }
+
+    /**
+     * Computes a fixed-basis exponentiation for each exponent of a
+     * file.
+     *
+     * @param tab Fixed-basis exponentiation table.
+     * @param exponents File of packed exponents.
+     * @param exponentsWidth Number of bytes of each exponent.
+     * @param output File where packed powers are written.
+     * @return Number of integers processed.
+     * @throws IOException If the files can not be read or written.
+     * @throws IllegalArgumentException If the size of the file is not
+     * a multiple of the width.
+     * @throws IllegalStateException If the table has been freed or if
+     * this is invoked from a worker thread of the executor.
+     */
+    public long fpowm(final FpowmTab tab,
+                      final Path exponents,
+                      final int exponentsWidth,
+                      final Path output) throws IOException {
+        checkTable(tab);
+        final int width = tab.width;
+
+        try (FileChannel exps = FileChannel.open(exponents,
+                                                 StandardOpenOption.READ);
+             FileChannel out = openOutput(output)) {
+
+            final long count = count(exps, exponentsWidth);
+
+            run(VMGMonitor.Operation.FPOWM, count, 8 * width,
+                8 * exponentsWidth, (first, n) -> {
+                    VMG.fpowm_buf(checkTable(tab),
+                                  map(exps, first, n, exponentsWidth),
+                                  exponentsWidth,
+                                  mapOutput(out, first, n, width), width, n);
+                });
+            return count;
+        }
+    }
+
+    /**
+     * Multiplies each integer of a file by a fixed integer.
+     *
+     * @param values File of packed integers.
+     * @param valuesWidth Number of bytes of each integer.
+     * @param factor Fixed integer.
+     * @param modulus Modulus.
+     * @param output File where packed products are written.
+     * @return Number of integers processed.
+     * @throws IOException If the files can not be read or written.
+     * @throws IllegalArgumentException If the size of the file is not
+     * a multiple of the width.
+     * @throws IllegalStateException If this is invoked from a worker
+     * thread of the executor.
+     */
+    public long multiply(final Path values,
+                         final int valuesWidth,
+                         final BigInteger factor,
+                         final BigInteger modulus,
+                         final Path output) throws IOException {
+        final int width = IntegerVector.byteLength(modulus.bitLength());
+        final byte[] nativeFactor = factor.toByteArray();
+        final byte[] nativeModulus = modulus.toByteArray();
+
+        try (FileChannel in = FileChannel.open(values,
+                                               StandardOpenOption.READ);
+             FileChannel out = openOutput(output)) {
+
+            final long count = count(in, valuesWidth);
+
+            run(null, count, modulus.bitLength(), 0, (first, n) -> {
+                    VMG.mulm_buf(map(in, first, n, valuesWidth), valuesWidth,
+                                 nativeFactor, nativeModulus,
+                                 mapOutput(out, first, n, width), width, n);
+                });
+            return count;
+        }
+    }
+
+    /**
+     * Verifies that a table has not been freed.
+     *
+     * @param tab Fixed-basis exponentiation table.
+     * @return Native pointer to the table.
+     * @throws IllegalStateException If the table has been freed.
+     */
+    private static long checkTable(final FpowmTab tab) {
+        final long tablePtr = tab.tablePtr;
+        if (tablePtr == 0) {
+            throw new IllegalStateException("Table has been freed!");
+        }
+        return tablePtr;
+    }
+
+    /**
+     * Opens an output file for writing, which truncates the file if it
+     * exists.
+     *
+     * @param output Output file.
+     * @return Channel of the file.
+     * @throws IOException If the file can not be opened.
+     */
+    private static FileChannel openOutput(final Path output)
+        throws IOException {
+        return FileChannel.open(output,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns the number of integers of a file.
+     *
+     * @param channel Channel of the file.
+     * @param width Number of bytes of each integer.
+     * @return Number of integers.
+     * @throws IOException If the size of the file can not be read.
+     * @throws IllegalArgumentException If the size of the file is not
+     * a multiple of the width.
+     */
+    private static long count(final FileChannel channel, final int width)
+        throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Non-positive width!");
+        }
+        final long size = channel.size();
+        if (size % width != 0) {
+            throw new IllegalArgumentException("File size is not a multiple "
+                                               + "of the width!");
+        }
+        return size / width;
+    }
+
+    /**
+     * Maps a chunk of an input file.
+     *
+     * @param channel Channel of the file.
+     * @param first Index of the first integer of the chunk.
+     * @param count Number of integers in the chunk.
+     * @param width Number of bytes of each integer.
+     * @return Direct buffer of the chunk.
+     * @throws IOException If the file can not be mapped.
+     */
+    private static ByteBuffer map(final FileChannel channel,
+                                  final long first,
+                                  final int count,
+                                  final int width) throws IOException {
+        return map(channel, FileChannel.MapMode.READ_ONLY, first, count,
+                   width);
+    }
+
+    /**
+     * Maps a chunk of an output file, which is extended if needed.
+     *
+     * @param channel Channel of the file.
+     * @param first Index of the first integer of the chunk.
+     * @param count Number of integers in the chunk.
+     * @param width Number of bytes of each integer.
+     * @return Direct buffer of the chunk.
+     * @throws IOException If the file can not be mapped.
+     */
+    private static ByteBuffer mapOutput(final FileChannel channel,
+                                        final long first,
+                                        final int count,
+                                        final int width) throws IOException {
+        return map(channel, FileChannel.MapMode.READ_WRITE, first, count,
+                   width);
+    }
+
+    /**
+     * Maps a chunk of a file.
+     *
+     * @param channel Channel of the file.
+     * @param mode Mode of mapping.
+     * @param first Index of the first integer of the chunk.
+     * @param count Number of integers in the chunk.
+     * @param width Number of bytes of each integer.
+     * @return Direct buffer of the chunk.
+     * @throws IOException If the file can not be mapped.
+     * @throws IllegalArgumentException If the chunk is too large to
+     * be mapped.
+     */
+    private static ByteBuffer map(final FileChannel channel,
+                                  final FileChannel.MapMode mode,
+                                  final long first,
+                                  final int count,
+                                  final int width) throws IOException {
+        final long size = (long) count * width;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk is too large!");
+        }
+        return channel.map(mode, first * width, size);
+    }
+
+    /**
+     * Processes all chunks using the worker threads and waits until
+     * they are completed.
+     *
+     * @param operation Monitored operation, or <code>null</code> if
+     * the operation is not monitored.
+     * @param count Number of integers.
+     * @param modulusBitLength Bit length of modulus.
+     * @param exponentBitLength Bit length of exponents.
+     * @param chunk Processes a chunk.
+     * @throws IOException If a chunk can not be processed.
+     * @throws IllegalStateException If this is invoked from a worker
+     * thread of the executor.
+     */
+    private void run(final VMGMonitor.Operation operation,
+                     final long count,
+                     final int modulusBitLength,
+                     final int exponentBitLength,
+                     final Chunk chunk) throws IOException {
+
+        if (async.isWorker()) {
+            throw new IllegalStateException("Invoked from a worker thread "
+                                            + "of the executor!");
+        }
+
+        final List<CompletableFuture<Void>> futures =
+            new ArrayList<CompletableFuture<Void>>();
+
+        for (long first = 0; first < count; first += chunkSize) {
+            final long f = first;
+            final int n = (int) Math.min(chunkSize, count - first);
+
+            futures.add(async.submit(() -> {
+                        final long t0 = VMGMonitor.start();
+                        chunk.process(f, n);
+                        if (operation != null) {
+                            final long t1 = VMGMonitor.split(t0);
+                            VMGMonitor.record(operation, t0, t0, t1,
+                                              modulusBitLength,
+                                              exponentBitLength, n);
+                        }
+                        return null;
+                    }));
+        }
+
+        try {
+            final CompletableFuture<?>[] all =
+                futures.toArray(new CompletableFuture<?>[0]);
+            CompletableFuture.allOf(all).join();
+        } catch (final CompletionException ce) {
+            final Throwable cause = ce.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw ce;
+            }
+        }
+    }
+}
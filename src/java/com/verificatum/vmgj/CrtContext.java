@@ -0,0 +1,268 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+
+/**
+ * Context for modular exponentiation modulo an integer with known
+ * factorization, e.g., an RSA modulus <i>n = pq</i> or the square
+ * <i>n^2</i> used in the Paillier cryptosystem. Exponentiations are
+ * computed modulo each prime power and recombined using the Chinese
+ * remainder theorem. For each prime power, the exponent is reduced
+ * modulo the order of its multiplicative group if the basis belongs
+ * to the group.
+ *
+ * <p>
+ *
+ * The native resources must be released using {@link #free()}, but
+ * only after every {@link CrtFpowmTab} created from this context has
+ * been freed.
+ *
+ * @author Douglas Wikstrom
+ */
+public class CrtContext {
+
+    /**
+     * Stores native pointer to the context.
+     */
+    protected long crtPtr;
+
+    /**
+     * Modulus of the context.
+     */
+    protected BigInteger modulus;
+
+    /**
+     * Number of bytes needed to represent residues modulo the
+     * modulus in unsigned form.
+     */
+    protected int width;
+
+    /**
+     * Number of tables created from this context that are not freed.
+     */
+    private int tables;
+
+    /**
+     * Creates a context for the product of two distinct primes.
+     *
+     * @param p First prime.
+     * @param q Second prime.
+     */
+    public CrtContext(final BigInteger p, final BigInteger q) {
+        this(new BigInteger[] {p, q}, new int[] {1, 1});
+    }
+
+    /**
+     * Creates a context for the product of the given primes raised
+     * to the given powers.
+     *
+     * @param primes Distinct primes.
+     * @param powers Positive powers of the primes.
+     * @throws IllegalArgumentException If the arrays are empty or have
+     * different lengths, if an integer is not greater than one or
+     * not a prime, if a power is not positive, or if the integers are
+     * not pairwise coprime.
+     */
+    public CrtContext(final BigInteger[] primes, final int[] powers) {
+        if (primes.length == 0 || primes.length != powers.length) {
+            throw new IllegalArgumentException("Empty arrays or arrays of "
+                                               + "different lengths!");
+        }
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < primes.length; i++) {
+            if (primes[i].compareTo(BigInteger.ONE) <= 0 || powers[i] <= 0) {
+                throw new IllegalArgumentException("Prime is not greater "
+                                                   + "than one or power is "
+                                                   + "not positive!");
+            }
+            product = product.multiply(primes[i].pow(powers[i]));
+        }
+
+        // Exponents are reduced modulo p^(k-1)(p-1) for each factor
+        // p^k, which is only sound for primes.
+        for (final BigInteger prime : primes) {
+            if (!prime.isProbablePrime(VMG.PRIME_CERTAINTY)) {
+                throw new IllegalArgumentException("Factor is not a "
+                                                   + "prime!");
+            }
+        }
+
+        crtPtr = VMG.crt_init(VMG.convert(primes), powers.clone());
+        if (crtPtr == 0) {
+            throw new IllegalArgumentException("Primes are not pairwise "
+                                               + "coprime!");
+        }
+        modulus = product;
+        width = IntegerVector.byteLength(modulus.bitLength());
+    }
+
+    /**
+     * Returns the modulus of this context.
+     *
+     * @return Modulus.
+     */
+    public BigInteger modulus() {
+        return modulus;
+    }
+
+    /**
+     * Verifies that the native resources have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    void checkAllocated() {
+        if (crtPtr == 0) {
+            throw new IllegalStateException("Context has been freed!");
+        }
+    }
+
+    /**
+     * Records that a table is created from this context.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    synchronized void retain() {
+        checkAllocated();
+        tables++;
+    }
+
+    /**
+     * Records that a table created from this context is freed.
+     */
+    synchronized void release() {
+        tables--;
+    }
+
+    /**
+     * Computes a modular exponentiation.
+     *
+     * @param basis Basis integer.
+     * @param exponent Non-negative exponent.
+     * @return Basis to the power of <code>exponent</code> modulo the
+     * modulus.
+     * @throws ArithmeticException If the exponent is negative.
+     */
+    public BigInteger powm(final BigInteger basis,
+                           final BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            throw new ArithmeticException("Negative exponent!");
+        }
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBasis = basis.toByteArray();
+        final byte[] nativeExponent = exponent.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult =
+            VMG.crt_powm(crtPtr, nativeBasis, nativeExponent);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.POWM, t0, t1, t2,
+                          modulus.bitLength(), exponent.bitLength(), 1);
+        return result;
+    }
+
+    /**
+     * Computes modular exponentiations of each basis to the power of
+     * the corresponding exponent.
+     *
+     * @param bases Basis integers.
+     * @param exponents Exponents used to compute powers.
+     * @return Powers of the bases modulo the modulus.
+     * @throws IllegalArgumentException If the vectors have different
+     * sizes.
+     */
+    public IntegerVector powm(final IntegerVector bases,
+                              final IntegerVector exponents) {
+        VMG.checkSizes(bases, exponents);
+        return powm(bases, exponents, 8 * exponents.width);
+    }
+
+    /**
+     * Computes modular exponentiations of each basis to the power of
+     * a common exponent.
+     *
+     * @param bases Basis integers.
+     * @param exponent Non-negative exponent used to compute powers.
+     * @return Powers of the bases modulo the modulus.
+     * @throws ArithmeticException If the exponent is negative.
+     */
+    public IntegerVector powm(final IntegerVector bases,
+                              final BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            throw new ArithmeticException("Negative exponent!");
+        }
+        return powm(bases, new IntegerVector(new BigInteger[] {exponent}),
+                    exponent.bitLength());
+    }
+
+    /**
+     * Computes modular exponentiations of packed vectors.
+     *
+     * @param bases Basis integers.
+     * @param exponents Exponents used to compute powers, or a single
+     * common exponent.
+     * @param exponentBitLength Bit length of the exponents, which is
+     * only used for monitoring.
+     * @return Powers of the bases modulo the modulus.
+     */
+    private IntegerVector powm(final IntegerVector bases,
+                               final IntegerVector exponents,
+                               final int exponentBitLength) {
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult =
+            VMG.crt_powm_vec(crtPtr, bases.data, bases.width,
+                             exponents.data, exponents.width, width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.POWM, t0, t0, t1,
+                          modulus.bitLength(), exponentBitLength,
+                          bases.size());
+        return new IntegerVector(nativeResult, width);
+    }
+
+    /**
+     * Releases the native resources allocated by this instance.
+     *
+     * @throws IllegalStateException If a table created from this
+     * context has not been freed.
+     */
+    public synchronized void free() {
+        if (tables > 0) {
+            throw new IllegalStateException("Context has tables that are "
+                                            + "not freed!");
+        }
+        if (crtPtr != 0) {
+            VMG.crt_clear(crtPtr);
+            crtPtr = 0;
+        }
+    }
+}
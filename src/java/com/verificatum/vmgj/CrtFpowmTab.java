@@ -0,0 +1,183 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+
+/**
+ * Fixed-basis exponentiation table modulo the modulus of a {@link
+ * CrtContext}. It consists of one table for each prime power of the
+ * context, and exponents are reduced modulo the order of the group of
+ * each prime power before the table is used, so each table only
+ * covers exponents of the bit length of this order.
+ *
+ * <p>
+ *
+ * The native resources must be released using {@link #free()} before
+ * those of the context, which refuses to be freed until then.
+ *
+ * @author Douglas Wikstrom
+ */
+public class CrtFpowmTab {
+
+    /**
+     * Stores native pointer to the precomputed table.
+     */
+    protected long tablePtr;
+
+    /**
+     * Context of this table.
+     */
+    protected CrtContext crt;
+
+    /**
+     * Creates a table using the default block width and a single
+     * thread for precomputation.
+     *
+     * @param crt Context of the table.
+     * @param basis Basis integer.
+     */
+    public CrtFpowmTab(final CrtContext crt, final BigInteger basis) {
+        this(crt, basis, 16, 1);
+    }
+
+    /**
+     * Creates a table.
+     *
+     * @param crt Context of the table.
+     * @param basis Basis integer.
+     * @param blockWidth Block width of the table of each prime power.
+     * @param parallelism Number of threads used for precomputation.
+     * @throws IllegalArgumentException If the block width is not
+     * between 1 and {@link FpowmTab#MAX_BLOCK_WIDTH}, or if the
+     * parallelism is not positive.
+     * @throws IllegalStateException If the context has been freed.
+     */
+    public CrtFpowmTab(final CrtContext crt,
+                       final BigInteger basis,
+                       final int blockWidth,
+                       final int parallelism) {
+        if (blockWidth < 1 || blockWidth > FpowmTab.MAX_BLOCK_WIDTH) {
+            throw new IllegalArgumentException("Block width is not between "
+                                               + "1 and "
+                                               + FpowmTab.MAX_BLOCK_WIDTH
+                                               + "!");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Non-positive parallelism!");
+        }
+        crt.retain();
+        this.crt = crt;
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBasis = basis.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        try {
+            tablePtr = VMG.crt_fpowm_precomp(crt.crtPtr, nativeBasis,
+                                             blockWidth, parallelism);
+        } finally {
+            if (tablePtr == 0) {
+                crt.release();
+            }
+        }
+        final long t2 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.PRECOMP, t0, t1, t2,
+                          crt.modulus.bitLength(), 0, 1);
+    }
+
+    /**
+     * Verifies that the native resources of this table and its
+     * context have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    private void checkAllocated() {
+        if (tablePtr == 0) {
+            throw new IllegalStateException("Table has been freed!");
+        }
+        crt.checkAllocated();
+    }
+
+    /**
+     * Computes a modular exponentiation of the basis of this table.
+     *
+     * @param exponent Non-negative exponent.
+     * @return Basis to the power of <code>exponent</code> modulo the
+     * modulus of the context.
+     * @throws ArithmeticException If the exponent is negative.
+     * @throws IllegalStateException If the table has been freed.
+     */
+    public BigInteger fpowm(final BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            throw new ArithmeticException("Negative exponent!");
+        }
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeExponent = exponent.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult = VMG.crt_fpowm(tablePtr, nativeExponent);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t1, t2,
+                          crt.modulus.bitLength(), exponent.bitLength(), 1);
+        return result;
+    }
+
+    /**
+     * Computes modular exponentiations of the basis of this table for
+     * a vector of exponents.
+     *
+     * @param exponents Exponents.
+     * @return Powers of the basis modulo the modulus of the context.
+     * @throws IllegalStateException If the table has been freed.
+     */
+    public IntegerVector fpowm(final IntegerVector exponents) {
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult = VMG.crt_fpowm_vec(tablePtr,
+                                                      exponents.data,
+                                                      exponents.width,
+                                                      crt.width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t0, t1,
+                          crt.modulus.bitLength(), 8 * exponents.width,
+                          exponents.size());
+        return new IntegerVector(nativeResult, crt.width);
+    }
+
+    /**
+     * Releases the native resources allocated by this instance.
+     */
+    public void free() {
+        if (tablePtr != 0) {
+            VMG.crt_fpowm_clear(tablePtr);
+            tablePtr = 0;
+            crt.release();
+        }
+    }
+}
@@ -0,0 +1,500 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.math.BigInteger;
+
+// We use C style to name things in this file, since it should
+// correspond to the native code.
+
+//CHECKSTYLE.OFF: LocalVariableName
+//CHECKSTYLE.OFF: LocalFinalVariableName
+//CHECKSTYLE.OFF: MemberName
+//CHECKSTYLE.OFF: MethodName
+//CHECKSTYLE.OFF: ParameterName
+
+/**
+ * Backend that invokes GMP and GMPMEE directly using the Foreign
+ * Function and Memory API instead of the JNI wrappers. The operands
+ * of a call are still copied, i.e., each byte array is copied into a
+ * confined arena and imported into a GMP integer, negative integers
+ * are negated in Java first, and the result is copied back into a
+ * new byte array. The symbols are looked up in the native library
+ * loaded by {@link VMG}, which depends on GMP and GMPMEE.
+ *
+ * <p>
+ *
+ * This class is only compiled if the compiler supports the API, i.e.,
+ * if it is of version 22 or later, and it is loaded using reflection
+ * by {@link VMG}. Precomputation and freeing of fixed-basis tables
+ * are delegated to the JNI backend, since they are only invoked
+ * rarely, and the tables are therefore identical for both backends.
+ *
+ * @author Douglas Wikstrom
+ */
+@SuppressWarnings("PMD.MethodNamingConventions")
+final class FFMBackend implements VMGBackend {
+
+    /**
+     * Size in bytes of <code>__mpz_struct</code> on LP64 platforms.
+     */
+    static final long MPZ_SIZE = 16;
+
+    /**
+     * Offset in bytes of the signed <code>_mp_size</code> field of
+     * <code>__mpz_struct</code>.
+     */
+    static final long MPZ_SIZE_OFFSET = 4;
+
+    /**
+     * Handle of <code>mpz_init</code>.
+     */
+    private final MethodHandle mpz_init;
+
+    /**
+     * Handle of <code>mpz_clear</code>.
+     */
+    private final MethodHandle mpz_clear;
+
+    /**
+     * Handle of <code>mpz_neg</code>.
+     */
+    private final MethodHandle mpz_neg;
+
+    /**
+     * Handle of <code>mpz_import</code>.
+     */
+    private final MethodHandle mpz_import;
+
+    /**
+     * Handle of <code>mpz_export</code>.
+     */
+    private final MethodHandle mpz_export;
+
+    /**
+     * Handle of <code>mpz_sizeinbase</code>.
+     */
+    private final MethodHandle mpz_sizeinbase;
+
+    /**
+     * Handle of <code>mpz_powm</code>.
+     */
+    private final MethodHandle mpz_powm;
+
+    /**
+     * Handle of <code>mpz_legendre</code>.
+     */
+    private final MethodHandle mpz_legendre;
+
+    /**
+     * Handle of <code>gmpmee_spowm</code>.
+     */
+    private final MethodHandle gmpmee_spowm;
+
+    /**
+     * Handle of <code>vmgj_fpowm</code>.
+     */
+    private final MethodHandle vmgj_fpowm;
+
+    /**
+     * Looks up all native routines needed by this backend.
+     *
+     * @throws UnsupportedOperationException If the platform is not a
+     * 64-bit platform.
+     * @throws UnsatisfiedLinkError If a native routine can not be
+     * found.
+     */
+    FFMBackend() {
+        if (ValueLayout.ADDRESS.byteSize() != 8) {
+            throw new UnsupportedOperationException("The FFM backend "
+                                                    + "requires a 64-bit "
+                                                    + "platform!");
+        }
+
+        final Linker linker = Linker.nativeLinker();
+        final SymbolLookup lookup =
+            SymbolLookup.loaderLookup().or(linker.defaultLookup());
+
+        final ValueLayout.OfLong size_t = ValueLayout.JAVA_LONG;
+        final ValueLayout.OfInt int_t = ValueLayout.JAVA_INT;
+        final ValueLayout ptr = ValueLayout.ADDRESS;
+
+        mpz_init = downcall(linker, lookup, "__gmpz_init",
+                            FunctionDescriptor.ofVoid(ptr));
+        mpz_clear = downcall(linker, lookup, "__gmpz_clear",
+                             FunctionDescriptor.ofVoid(ptr));
+        mpz_neg = downcall(linker, lookup, "__gmpz_neg",
+                           FunctionDescriptor.ofVoid(ptr, ptr));
+        mpz_import = downcall(linker, lookup, "__gmpz_import",
+                              FunctionDescriptor.ofVoid(ptr, size_t, int_t,
+                                                        size_t, int_t, size_t,
+                                                        ptr));
+        mpz_export = downcall(linker, lookup, "__gmpz_export",
+                              FunctionDescriptor.of(ptr, ptr, ptr, int_t,
+                                                    size_t, int_t, size_t,
+                                                    ptr));
+        mpz_sizeinbase = downcall(linker, lookup, "__gmpz_sizeinbase",
+                                  FunctionDescriptor.of(size_t, ptr, int_t));
+        mpz_powm = downcall(linker, lookup, "__gmpz_powm",
+                            FunctionDescriptor.ofVoid(ptr, ptr, ptr, ptr));
+        mpz_legendre = downcall(linker, lookup, "__gmpz_legendre",
+                                FunctionDescriptor.of(int_t, ptr, ptr));
+        gmpmee_spowm = downcall(linker, lookup, "gmpmee_spowm",
+                                FunctionDescriptor.ofVoid(ptr, ptr, ptr,
+                                                          size_t, ptr));
+        vmgj_fpowm = downcall(linker, lookup, "vmgj_fpowm",
+                              FunctionDescriptor.ofVoid(ptr, ptr, ptr));
+    }
+
+    /**
+     * Returns a handle of the named native routine.
+     *
+     * @param linker Native linker.
+     * @param lookup Lookup used to find the symbol.
+     * @param name Name of symbol.
+     * @param descriptor Signature of the native routine.
+     * @return Handle of the native routine.
+     * @throws UnsatisfiedLinkError If the symbol can not be found.
+     */
+    private static MethodHandle downcall(final Linker linker,
+                                         final SymbolLookup lookup,
+                                         final String name,
+                                         final FunctionDescriptor descriptor) {
+        final MemorySegment symbol = lookup.find(name).orElseThrow(
+            () -> new UnsatisfiedLinkError("Unable to find " + name + "!"));
+        return linker.downcallHandle(symbol, descriptor);
+    }
+
+    /**
+     * Converts a throwable thrown by a method handle to an unchecked
+     * exception.
+     *
+     * @param t Throwable thrown by a method handle.
+     * @return Unchecked exception to be thrown by the caller.
+     */
+    private static RuntimeException unchecked(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            return new IllegalStateException("Native call failed!", t);
+        }
+    }
+
+    /**
+     * Initializes an integer from its representation in two's
+     * complement.
+     *
+     * @param arena Arena used for temporary allocation.
+     * @param z Segment holding an uninitialized
+     * <code>__mpz_struct</code>.
+     * @param bytes Integer in two's complement representation.
+     * @throws Throwable If the native call fails.
+     */
+    private void init(final Arena arena,
+                      final MemorySegment z,
+                      final byte[] bytes)
+        throws Throwable {
+
+        final boolean negative = bytes[0] < 0;
+        byte[] magnitude = bytes;
+        if (negative) {
+            magnitude = new BigInteger(bytes).negate().toByteArray();
+        }
+
+        final MemorySegment src = arena.allocate(magnitude.length);
+        MemorySegment.copy(magnitude, 0, src, ValueLayout.JAVA_BYTE, 0,
+                           magnitude.length);
+
+        mpz_init.invokeExact(z);
+        mpz_import.invokeExact(z, (long) magnitude.length, 1, 1L, 1, 0L,
+                               src);
+        if (negative) {
+            mpz_neg.invokeExact(z, z);
+        }
+    }
+
+    /**
+     * Allocates and initializes an integer in the given arena from
+     * its representation in two's complement. The integer must be
+     * cleared using {@link #clear(MemorySegment)} before the arena
+     * is closed.
+     *
+     * @param arena Arena used for allocation.
+     * @param bytes Integer in two's complement representation.
+     * @return Segment holding the <code>__mpz_struct</code>.
+     * @throws Throwable If the native call fails.
+     */
+    private MemorySegment init(final Arena arena, final byte[] bytes)
+        throws Throwable {
+        final MemorySegment z = arena.allocate(MPZ_SIZE, 8);
+        init(arena, z, bytes);
+        return z;
+    }
+
+    /**
+     * Allocates and initializes an array of integers in the given
+     * arena from their representations in two's complement, i.e., a
+     * segment of consecutive <code>__mpz_struct</code>. The integers
+     * must be cleared using {@link #clear(MemorySegment, int)} before
+     * the arena is closed. If the initialization fails, then the
+     * integers already initialized are cleared.
+     *
+     * @param arena Arena used for allocation.
+     * @param bytes Integers in two's complement representation.
+     * @return Segment holding the array.
+     * @throws Throwable If the native call fails.
+     */
+    private MemorySegment init(final Arena arena, final byte[][] bytes)
+        throws Throwable {
+        final MemorySegment zs = arena.allocate(bytes.length * MPZ_SIZE, 8);
+        int i = 0;
+        try {
+            for (; i < bytes.length; i++) {
+                init(arena, zs.asSlice(i * MPZ_SIZE, MPZ_SIZE), bytes[i]);
+            }
+        } catch (final Throwable t) {
+            clear(zs, i);
+            throw t;
+        }
+        return zs;
+    }
+
+    /**
+     * Frees the limbs of an integer allocated in an arena.
+     *
+     * @param z Segment holding the <code>__mpz_struct</code>.
+     * @throws Throwable If the native call fails.
+     */
+    private void clear(final MemorySegment z) throws Throwable {
+        mpz_clear.invokeExact(z);
+    }
+
+    /**
+     * Frees the limbs of an array of integers allocated in an arena.
+     *
+     * @param zs Segment holding the array.
+     * @param len Number of integers.
+     * @throws Throwable If the native call fails.
+     */
+    private void clear(final MemorySegment zs, final int len)
+        throws Throwable {
+        for (int i = 0; i < len; i++) {
+            clear(zs.asSlice(i * MPZ_SIZE, MPZ_SIZE));
+        }
+    }
+
+    /**
+     * Frees the limbs of the given integers allocated in an arena,
+     * except those that were never initialized, i.e., are
+     * <code>null</code>. This is used in <code>finally</code> blocks,
+     * since the arena only frees the memory of the structs.
+     *
+     * @param zs Segments holding <code>__mpz_struct</code> or
+     * <code>null</code>.
+     * @throws Throwable If the native call fails.
+     */
+    private void clearAll(final MemorySegment... zs) throws Throwable {
+        for (final MemorySegment z : zs) {
+            if (z != null) {
+                clear(z);
+            }
+        }
+    }
+
+    /**
+     * Returns the two's complement representation of an integer.
+     *
+     * @param arena Arena used for temporary allocation.
+     * @param z Segment holding the <code>__mpz_struct</code>.
+     * @return Integer in two's complement representation.
+     * @throws Throwable If the native call fails.
+     */
+    private byte[] toByteArray(final Arena arena, final MemorySegment z)
+        throws Throwable {
+
+        final long bitLength = (long) mpz_sizeinbase.invokeExact(z, 2);
+        final int byteLength = (int) ((bitLength + 7) / 8);
+
+        // We add a leading zero byte where the sign is encoded.
+        final byte[] bytes = new byte[byteLength + 1];
+
+        final MemorySegment dst = arena.allocate(byteLength);
+        final MemorySegment unused =
+            (MemorySegment) mpz_export.invokeExact(dst, MemorySegment.NULL,
+                                                   1, 1L, 1, 0L, z);
+        MemorySegment.copy(dst, ValueLayout.JAVA_BYTE, 0, bytes, 1,
+                           byteLength);
+
+        if (z.get(ValueLayout.JAVA_INT, MPZ_SIZE_OFFSET) < 0) {
+            return new BigInteger(bytes).negate().toByteArray();
+        } else {
+            return bytes;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "ffm";
+    }
+
+    @Override
+    public byte[] powm(final byte[] basis,
+                       final byte[] exponent,
+                       final byte[] modulus) {
+        try (Arena arena = Arena.ofConfined()) {
+
+            MemorySegment b = null;
+            MemorySegment e = null;
+            MemorySegment m = null;
+            MemorySegment r = null;
+            try {
+                b = init(arena, basis);
+                e = init(arena, exponent);
+                m = init(arena, modulus);
+                r = init(arena, new byte[1]);
+
+                mpz_powm.invokeExact(r, b, e, m);
+                return toByteArray(arena, r);
+
+            } finally {
+                clearAll(r, m, e, b);
+            }
+
+        } catch (final Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public byte[] spowm(final byte[][] bases,
+                        final byte[][] exponents,
+                        final byte[] modulus) {
+        try (Arena arena = Arena.ofConfined()) {
+
+            MemorySegment bs = null;
+            MemorySegment es = null;
+            MemorySegment m = null;
+            MemorySegment r = null;
+            try {
+                bs = init(arena, bases);
+                es = init(arena, exponents);
+                m = init(arena, modulus);
+                r = init(arena, new byte[1]);
+
+                gmpmee_spowm.invokeExact(r, bs, es, (long) bases.length, m);
+                return toByteArray(arena, r);
+
+            } finally {
+                clearAll(r, m);
+                if (es != null) {
+                    clear(es, exponents.length);
+                }
+                if (bs != null) {
+                    clear(bs, bases.length);
+                }
+            }
+
+        } catch (final Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public long fpowm_precomp(final byte[] basis,
+                              final byte[] modulus,
+                              final int blockWidth,
+                              final int exponentBitlen,
+                              final int threads,
+                              final boolean lazy) {
+        return VMG.JNI.fpowm_precomp(basis, modulus, blockWidth,
+                                     exponentBitlen, threads, lazy);
+    }
+
+    @Override
+    public byte[] fpowm(final long tablePtr, final byte[] exponent) {
+        try (Arena arena = Arena.ofConfined()) {
+
+            final MemorySegment table = MemorySegment.ofAddress(tablePtr);
+            MemorySegment e = null;
+            MemorySegment r = null;
+            try {
+                e = init(arena, exponent);
+                r = init(arena, new byte[1]);
+
+                vmgj_fpowm.invokeExact(r, table, e);
+                return toByteArray(arena, r);
+
+            } finally {
+                clearAll(r, e);
+            }
+
+        } catch (final Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void fpowm_clear(final long tablePtr) {
+        VMG.JNI.fpowm_clear(tablePtr);
+    }
+
+    @Override
+    public int legendre(final byte[] op, final byte[] odd_prime) {
+        try (Arena arena = Arena.ofConfined()) {
+
+            MemorySegment a = null;
+            MemorySegment p = null;
+            try {
+                a = init(arena, op);
+                p = init(arena, odd_prime);
+
+                return (int) mpz_legendre.invokeExact(a, p);
+
+            } finally {
+                clearAll(p, a);
+            }
+
+        } catch (final Throwable t) {
+            throw unchecked(t);
+        }
+    }
+}
+//CHECKSTYLE.ON: LocalVariableName
+//CHECKSTYLE.ON: LocalFinalVariableName
+//CHECKSTYLE.ON: MemberName
+//CHECKSTYLE.ON: MethodName
+//CHECKSTYLE.ON: ParameterName
@@ -28,12 +28,29 @@
 package com.verificatum.vmgj;
 
 import java.math.BigInteger;
+import java.util.Objects;
 
 /**
  * Provides a Java wrapper for a pointer to a native pre-computed
  * table used for fixed based modular exponentiation as implemented in
  * {@link VMG}.
  *
+ * <p>
+ *
+ * A table with block width <i>w</i> for exponents of bit length
+ * <i>n</i> holds <i>2^w</i> residues, and an exponentiation requires
+ * about <i>n/w</i> squarings and <i>n/w</i> multiplications. Thus, the
+ * block width trades space for time. Use {@link #byteSize(int, int)}
+ * to find the exact size of a table before it is created, or {@link
+ * #withMemoryBudget(BigInteger, BigInteger, int, long, int, boolean)}
+ * to create the fastest table within a memory budget.
+ *
+ * <p>
+ *
+ * Tables are computed and used by the comb method implemented in the
+ * native code of VMGJ. The block width must be between 1 and {@link
+ * #MAX_BLOCK_WIDTH}.
+ *
  * @author Douglas Wikstrom
  */
 public class FpowmTab {
@@ -44,6 +61,38 @@ public class FpowmTab {
      */
     protected long tablePtr;
 
+    /**
+     * Number of bytes needed to represent residues modulo the
+     * modulus in unsigned form.
+     */
+    protected int width;
+
+    /**
+     * Modulus of the table.
+     */
+    protected BigInteger modulus;
+
+    /**
+     * Bit length of the modulus.
+     */
+    protected int modulusBitLength;
+
+    /**
+     * Block width of the table.
+     */
+    protected int blockWidth;
+
+    /**
+     * Expected bit length of exponents.
+     */
+    protected int exponentBitLength;
+
+    /**
+     * Maximal block width. The table holds <code>2^blockWidth</code>
+     * integers, so this is far beyond what is useful.
+     */
+    public static final int MAX_BLOCK_WIDTH = 30;
+
     /**
      * Creates a precomputed table for the given basis, modulus, and
      * exponent bit length.
@@ -69,15 +118,214 @@ public class FpowmTab {
      * splitting.
      * @param exponentBitlen Expected bit length of exponents used when
      * invoking the table.
+     * @throws IllegalArgumentException If the block width is not
+     * between 1 and {@link #MAX_BLOCK_WIDTH}.
      */
     public FpowmTab(final BigInteger basis,
                     final BigInteger modulus,
                     final int blockWidth,
                     final int exponentBitlen) {
-        tablePtr = VMG.fpowm_precomp(basis.toByteArray(),
-                                     modulus.toByteArray(),
-                                     blockWidth,
-                                     exponentBitlen);
+        this(basis, modulus, blockWidth, exponentBitlen, 1, false);
+    }
+
+    /**
+     * Creates a precomputed table for the given basis, modulus, and
+     * exponent bit length using the given number of threads. The
+     * table holds <code>2^blockWidth</code> products that are
+     * computed level by level, where the products of a level are
+     * independent and split between the threads.
+     *
+     * <p>
+     *
+     * If the precomputation is lazy, then the constructor returns
+     * immediately and the table is computed in the background. Until
+     * it is ready, exponentiations are computed without the table,
+     * i.e., they are correct but slower.
+     *
+     * @param basis Basis element.
+     * @param modulus Modulus used during modular exponentiations.
+     * @param blockWidth Number of basis elements used during
+     * splitting.
+     * @param exponentBitlen Expected bit length of exponents used when
+     * invoking the table.
+     * @param parallelism Number of threads used for precomputation.
+     * @param lazy Decides if the precomputation is executed in the
+     * background.
+     * @throws IllegalArgumentException If the block width is not
+     * between 1 and {@link #MAX_BLOCK_WIDTH}, or if the parallelism
+     * is not positive.
+     */
+    public FpowmTab(final BigInteger basis,
+                    final BigInteger modulus,
+                    final int blockWidth,
+                    final int exponentBitlen,
+                    final int parallelism,
+                    final boolean lazy) {
+        if (blockWidth < 1 || blockWidth > MAX_BLOCK_WIDTH) {
+            throw new IllegalArgumentException("Block width is not between "
+                                               + "1 and " + MAX_BLOCK_WIDTH
+                                               + "!");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Non-positive parallelism!");
+        }
+        width = IntegerVector.byteLength(modulus.bitLength());
+        this.modulus = modulus;
+        this.modulusBitLength = modulus.bitLength();
+        this.blockWidth = blockWidth;
+        this.exponentBitLength = exponentBitlen;
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBasis = basis.toByteArray();
+        final byte[] nativeModulus = modulus.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        tablePtr = VMG.BACKEND.fpowm_precomp(nativeBasis,
+                                             nativeModulus,
+                                             blockWidth,
+                                             exponentBitlen,
+                                             parallelism,
+                                             lazy);
+        final long t2 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.PRECOMP, t0, t1, t2,
+                          modulus.bitLength(), exponentBitlen, 1);
+    }
+
+    /**
+     * Creates the table with the largest block width, i.e., the
+     * fastest table, such that the table fits within the given
+     * number of bytes. The block width is never larger than the
+     * exponent bit length, since this would only waste memory.
+     *
+     * @param basis Basis element.
+     * @param modulus Modulus used during modular exponentiations.
+     * @param exponentBitlen Expected bit length of exponents used when
+     * invoking the table.
+     * @param maxBytes Maximal number of bytes of the table in native
+     * space.
+     * @param parallelism Number of threads used for precomputation.
+     * @param lazy Decides if the precomputation is executed in the
+     * background.
+     * @return Precomputed table.
+     * @throws IllegalArgumentException If not even a table with block
+     * width one fits within the given number of bytes.
+     */
+    public static FpowmTab withMemoryBudget(final BigInteger basis,
+                                            final BigInteger modulus,
+                                            final int exponentBitlen,
+                                            final long maxBytes,
+                                            final int parallelism,
+                                            final boolean lazy) {
+        final int blockWidth = blockWidth(modulus.bitLength(),
+                                          exponentBitlen,
+                                          maxBytes);
+        return new FpowmTab(basis, modulus, blockWidth, exponentBitlen,
+                            parallelism, lazy);
+    }
+
+    /**
+     * Returns the largest block width of a table that fits within the
+     * given number of bytes.
+     *
+     * @param modulusBitLength Bit length of the modulus.
+     * @param exponentBitlen Expected bit length of exponents.
+     * @param maxBytes Maximal number of bytes of the table in native
+     * space.
+     * @return Block width.
+     * @throws IllegalArgumentException If not even a table with block
+     * width one fits within the given number of bytes.
+     */
+    public static int blockWidth(final int modulusBitLength,
+                                 final int exponentBitlen,
+                                 final long maxBytes) {
+        if (byteSize(modulusBitLength, 1) > maxBytes) {
+            throw new IllegalArgumentException("Memory budget is too small "
+                                               + "for any table!");
+        }
+        final int maxWidth =
+            Math.min(MAX_BLOCK_WIDTH, Math.max(1, exponentBitlen));
+        int blockWidth = 1;
+        while (blockWidth < maxWidth
+               && byteSize(modulusBitLength, blockWidth + 1) <= maxBytes) {
+            blockWidth++;
+        }
+        return blockWidth;
+    }
+
+    /**
+     * Returns the exact number of bytes allocated in native space for
+     * a table, excluding the overhead of the memory allocator.
+     *
+     * @param modulusBitLength Bit length of the modulus.
+     * @param blockWidth Block width of the table.
+     * @return Number of bytes of the table.
+     * @throws IllegalArgumentException If the block width is not
+     * between 1 and {@link #MAX_BLOCK_WIDTH}.
+     */
+    public static long byteSize(final int modulusBitLength,
+                                final int blockWidth) {
+        if (blockWidth < 1 || blockWidth > MAX_BLOCK_WIDTH) {
+            throw new IllegalArgumentException("Block width is not between "
+                                               + "1 and " + MAX_BLOCK_WIDTH
+                                               + "!");
+        }
+        return VMG.fpowm_size(modulusBitLength, blockWidth);
+    }
+
+    /**
+     * Returns the number of bytes allocated in native space for this
+     * table, excluding the overhead of the memory allocator.
+     *
+     * @return Number of bytes of this table.
+     */
+    public long byteSize() {
+        return byteSize(modulusBitLength, blockWidth);
+    }
+
+    /**
+     * Returns the block width of this table.
+     *
+     * @return Block width.
+     */
+    public int blockWidth() {
+        return blockWidth;
+    }
+
+    /**
+     * Returns the expected bit length of exponents of this table,
+     * which is also the bit length of exponents derived from a seed.
+     *
+     * @return Bit length of exponents.
+     */
+    public int exponentBitLength() {
+        return exponentBitLength;
+    }
+
+    /**
+     * Verifies that the native resources have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    private void checkAllocated() {
+        if (tablePtr == 0) {
+            throw new IllegalStateException("Table has been freed!");
+        }
+    }
+
+    /**
+     * Returns true if the precomputation is completed, which is
+     * always the case unless the table was created lazily.
+     *
+     * @return True if the precomputation is completed.
+     */
+    public boolean isReady() {
+        return VMG.fpowm_ready(tablePtr);
+    }
+
+    /**
+     * Blocks until the precomputation is completed.
+     */
+    public void awaitReady() {
+        VMG.fpowm_wait(tablePtr);
     }
 
     /**
@@ -88,8 +336,108 @@ public class FpowmTab {
      * @return Power of basis for which pre-computation took place.
      */
     public BigInteger fpowm(final BigInteger exponent) {
-        return new BigInteger(VMG.fpowm(tablePtr,
-                                        exponent.toByteArray()));
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeExponent = exponent.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult = VMG.BACKEND.fpowm(tablePtr,
+                                                      nativeExponent);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t1, t2,
+                          8 * width, exponent.bitLength(), 1);
+        return result;
+    }
+
+    /**
+     * Computes modular exponentiations using the given exponents and
+     * the basis and modulus previously used to construct this table.
+     *
+     * @param exponents Exponents used in modular exponentiations.
+     * @return Powers of basis for which pre-computation took place.
+     */
+    public IntegerVector fpowm(final IntegerVector exponents) {
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult = VMG.fpowm_vec(tablePtr,
+                                                  exponents.data,
+                                                  exponents.width,
+                                                  width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t0, t1,
+                          8 * width, 8 * exponents.width, exponents.size());
+        return new IntegerVector(nativeResult, width);
+    }
+
+    /**
+     * Computes modular exponentiations of the basis for exponents
+     * derived deterministically from the given seed. The caller
+     * provides the randomness through the seed, which is expanded
+     * natively using SHA-256 in counter mode into exponents of the
+     * bit length of this table, i.e., the output is the concatenation
+     * of the blocks SHA-256(seed | k) for k = 0, 1, 2, ..., where k
+     * is encoded as four bytes in big-endian byte order. Each
+     * exponent is formed from the next {@link
+     * IntegerVector#byteLength(int)} bytes of output, interpreted in
+     * big-endian byte order, with the leading bits beyond the bit
+     * length set to zero.
+     *
+     * @param seed Seed of the generator.
+     * @param count Number of powers.
+     * @return Powers of the basis.
+     */
+    public IntegerVector fpowm(final byte[] seed, final int count) {
+        return fpowm(seed, count, null);
+    }
+
+    /**
+     * Computes modular exponentiations of the basis for exponents
+     * derived from the given seed as explained in {@link
+     * #fpowm(byte[], int)}, and stores the exponents in the given
+     * vector.
+     *
+     * @param seed Seed of the generator.
+     * @param count Number of powers.
+     * @param exponents Destination of the exponents, which must have
+     * size <code>count</code> and width {@link
+     * IntegerVector#byteLength(int)} of the exponent bit length, or
+     * <code>null</code> if the exponents are not needed.
+     * @return Powers of the basis.
+     * @throws IllegalArgumentException If the count is negative, if
+     * the exponent bit length of this table is not positive, if the
+     * exponents or the powers do not fit in a byte array, or if the
+     * destination of the exponents has the wrong size or width.
+     * @throws IllegalStateException If the table has been freed.
+     */
+    public IntegerVector fpowm(final byte[] seed,
+                               final int count,
+                               final IntegerVector exponents) {
+        Objects.requireNonNull(seed);
+        if (count < 0 || exponentBitLength <= 0) {
+            throw new IllegalArgumentException("Negative count or "
+                                               + "non-positive exponent "
+                                               + "bit length!");
+        }
+        final int exponentsWidth = IntegerVector.byteLength(exponentBitLength);
+        if ((long) count * Math.max(exponentsWidth, width)
+            > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many powers for a byte "
+                                               + "array!");
+        }
+        if (exponents != null
+            && (exponents.size() != count
+                || exponents.width != exponentsWidth)) {
+            throw new IllegalArgumentException("Destination of exponents "
+                                               + "has wrong size or "
+                                               + "width!");
+        }
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult =
+            VMG.fpowm_prg(tablePtr, seed, count, exponentBitLength, width,
+                          exponents == null ? null : exponents.data);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t0, t1,
+                          8 * width, exponentBitLength, count);
+        return new IntegerVector(nativeResult, width);
     }
 
     /**
@@ -97,7 +445,7 @@ public class FpowmTab {
      */
     public void free() {
         if (tablePtr != 0) {
-            VMG.fpowm_clear(tablePtr);
+            VMG.BACKEND.fpowm_clear(tablePtr);
             tablePtr = 0;
         }
     }
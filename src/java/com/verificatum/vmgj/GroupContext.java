@@ -0,0 +1,368 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+
+/**
+ * Context for exponentiation in a subgroup of known order <i>q</i> of
+ * the multiplicative group modulo a modulus, e.g., a prime-order
+ * subgroup modulo a safe prime. Exponents are reduced modulo <i>q</i>
+ * natively before exponentiation, so the cost of an exponentiation
+ * depends on the bit length of <i>q</i> rather than on the bit length
+ * of the exponent given by the caller, e.g., a sum of products of
+ * challenges and secrets. Negative exponents are reduced to
+ * non-negative exponents in the same way.
+ *
+ * <p>
+ *
+ * GMP chooses the window size of an exponentiation from the bit
+ * length of the exponent, so the reduced exponent also gives a
+ * window tuned to its length. Fixed-basis tables created using
+ * {@link #fpowmTab(BigInteger, int, int)} only cover exponents of
+ * the bit length of <i>q</i>.
+ *
+ * <p>
+ *
+ * The reduction is only sound for elements of the subgroup, which is
+ * not verified, i.e., the caller must make sure that all bases
+ * belong to the subgroup. The native resources must be released
+ * using {@link #free()}.
+ *
+ * @author Douglas Wikstrom
+ */
+public class GroupContext {
+
+    /**
+     * Stores native pointer to the context.
+     */
+    protected long groupPtr;
+
+    /**
+     * Modulus of this context.
+     */
+    protected BigInteger modulus;
+
+    /**
+     * Order of the subgroup.
+     */
+    protected BigInteger order;
+
+    /**
+     * Number of bytes needed to represent residues modulo the
+     * modulus in unsigned form.
+     */
+    protected int width;
+
+    /**
+     * Creates a context for the subgroup of the given order modulo
+     * the given modulus.
+     *
+     * @param modulus Modulus.
+     * @param order Order of the subgroup.
+     * @throws IllegalArgumentException If the modulus is smaller than
+     * two or the order is not positive.
+     */
+    public GroupContext(final BigInteger modulus, final BigInteger order) {
+        if (modulus.compareTo(BigInteger.ONE) <= 0 || order.signum() <= 0) {
+            throw new IllegalArgumentException("Modulus is smaller than two "
+                                               + "or order is not "
+                                               + "positive!");
+        }
+        this.modulus = modulus;
+        this.order = order;
+        this.width = IntegerVector.byteLength(modulus.bitLength());
+        groupPtr = VMG.group_init(modulus.toByteArray(), order.toByteArray());
+    }
+
+    /**
+     * Returns the modulus of this context.
+     *
+     * @return Modulus.
+     */
+    public BigInteger modulus() {
+        return modulus;
+    }
+
+    /**
+     * Returns the order of the subgroup of this context.
+     *
+     * @return Order of the subgroup.
+     */
+    public BigInteger order() {
+        return order;
+    }
+
+    /**
+     * Verifies that the native resources have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    void checkAllocated() {
+        if (groupPtr == 0) {
+            throw new IllegalStateException("Context has been freed!");
+        }
+    }
+
+    /**
+     * Returns the bit length of the given exponent after reduction,
+     * which is only used for monitoring.
+     *
+     * @param exponentBitLength Bit length of an exponent.
+     * @return Bound on the bit length of the reduced exponent.
+     */
+    private int reducedBitLength(final int exponentBitLength) {
+        return Math.min(exponentBitLength, order.bitLength());
+    }
+
+    /**
+     * Computes a modular exponentiation with the exponent reduced
+     * modulo the order.
+     *
+     * @param basis Element of the subgroup.
+     * @param exponent Exponent.
+     * @return Basis to the power of <code>exponent</code> modulo the
+     * modulus.
+     */
+    public BigInteger powm(final BigInteger basis,
+                           final BigInteger exponent) {
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBasis = basis.toByteArray();
+        final byte[] nativeExponent = exponent.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult =
+            VMG.group_powm(groupPtr, nativeBasis, nativeExponent);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.POWM, t0, t1, t2,
+                          modulus.bitLength(),
+                          reducedBitLength(exponent.bitLength()), 1);
+        return result;
+    }
+
+    /**
+     * Computes modular exponentiations of each basis to the power of
+     * the corresponding exponent reduced modulo the order.
+     *
+     * @param bases Elements of the subgroup.
+     * @param exponents Exponents used to compute powers.
+     * @return Powers of the bases modulo the modulus.
+     * @throws IllegalArgumentException If the vectors have different
+     * sizes.
+     */
+    public IntegerVector powm(final IntegerVector bases,
+                              final IntegerVector exponents) {
+        VMG.checkSizes(bases, exponents);
+        return powm(bases, exponents, 8 * exponents.width);
+    }
+
+    /**
+     * Computes modular exponentiations of each basis to the power of
+     * a common exponent reduced modulo the order.
+     *
+     * @param bases Elements of the subgroup.
+     * @param exponent Exponent used to compute powers.
+     * @return Powers of the bases modulo the modulus.
+     */
+    public IntegerVector powm(final IntegerVector bases,
+                              final BigInteger exponent) {
+
+        // Negative integers can not be packed.
+        final BigInteger packable =
+            exponent.signum() < 0 ? exponent.mod(order) : exponent;
+        return powm(bases, new IntegerVector(new BigInteger[] {packable}),
+                    packable.bitLength());
+    }
+
+    /**
+     * Computes modular exponentiations of packed vectors.
+     *
+     * @param bases Elements of the subgroup.
+     * @param exponents Exponents used to compute powers, or a single
+     * common exponent.
+     * @param exponentBitLength Bit length of the exponents, which is
+     * only used for monitoring.
+     * @return Powers of the bases modulo the modulus.
+     */
+    private IntegerVector powm(final IntegerVector bases,
+                               final IntegerVector exponents,
+                               final int exponentBitLength) {
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult =
+            VMG.group_powm_vec(groupPtr, bases.data, bases.width,
+                               exponents.data, exponents.width, width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.POWM, t0, t0, t1,
+                          modulus.bitLength(),
+                          reducedBitLength(exponentBitLength),
+                          bases.size());
+        return new IntegerVector(nativeResult, width);
+    }
+
+    /**
+     * Computes a simultaneous modular exponentiation with the
+     * exponents reduced modulo the order.
+     *
+     * @param bases Elements of the subgroup.
+     * @param exponents Exponents.
+     * @return Product of the bases to the powers of
+     * <code>exponents</code> modulo the modulus.
+     * @throws IllegalArgumentException If the arrays have different
+     * lengths.
+     */
+    public BigInteger spowm(final BigInteger[] bases,
+                            final BigInteger[] exponents) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Arrays have different "
+                                               + "lengths!");
+        }
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        final byte[][] nativeBases = VMG.convert(bases);
+        final byte[][] nativeExponents = VMG.convert(exponents);
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult =
+            VMG.group_spowm(groupPtr, nativeBases, nativeExponents);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.SPOWM, t0, t1, t2,
+                          modulus.bitLength(),
+                          reducedBitLength(VMG.maxBitLength(exponents)),
+                          bases.length);
+        return result;
+    }
+
+    /**
+     * Creates a fixed-basis table for exponents of the bit length of
+     * the order, to be used with {@link #fpowm(FpowmTab, BigInteger)}
+     * and {@link #fpowm(FpowmTab, IntegerVector)}.
+     *
+     * @param basis Element of the subgroup.
+     * @param blockWidth Block width of the table.
+     * @param parallelism Number of threads used for precomputation.
+     * @return Fixed-basis table.
+     * @throws IllegalArgumentException If the block width is not
+     * between 1 and {@link FpowmTab#MAX_BLOCK_WIDTH}, or if the
+     * parallelism is not positive.
+     */
+    public FpowmTab fpowmTab(final BigInteger basis,
+                             final int blockWidth,
+                             final int parallelism) {
+        return new FpowmTab(basis, modulus, blockWidth, order.bitLength(),
+                            parallelism, false);
+    }
+
+    /**
+     * Verifies that the given table can be used with this context.
+     *
+     * @param table Fixed-basis table.
+     * @throws IllegalStateException If this context or the table has
+     * been freed.
+     * @throws IllegalArgumentException If the modulus of the table
+     * differs from the modulus of this context.
+     */
+    private void checkTable(final FpowmTab table) {
+        checkAllocated();
+        if (table.tablePtr == 0) {
+            throw new IllegalStateException("Table has been freed!");
+        }
+        if (!table.modulus.equals(modulus)) {
+            throw new IllegalArgumentException("Table has a different "
+                                               + "modulus!");
+        }
+    }
+
+    /**
+     * Computes a fixed-basis modular exponentiation with the exponent
+     * reduced modulo the order.
+     *
+     * @param table Table created by {@link #fpowmTab(BigInteger, int,
+     * int)}.
+     * @param exponent Exponent.
+     * @return Basis of the table to the power of
+     * <code>exponent</code> modulo the modulus.
+     * @throws IllegalStateException If this context or the table has
+     * been freed.
+     * @throws IllegalArgumentException If the modulus of the table
+     * differs from the modulus of this context.
+     */
+    public BigInteger fpowm(final FpowmTab table, final BigInteger exponent) {
+        checkTable(table);
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeExponent = exponent.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final byte[] nativeResult =
+            VMG.group_fpowm(groupPtr, table.tablePtr, nativeExponent);
+        final long t2 = VMGMonitor.split(t0);
+        final BigInteger result = new BigInteger(nativeResult);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t1, t2,
+                          modulus.bitLength(),
+                          reducedBitLength(exponent.bitLength()), 1);
+        return result;
+    }
+
+    /**
+     * Computes fixed-basis modular exponentiations for a vector of
+     * exponents reduced modulo the order.
+     *
+     * @param table Table created by {@link #fpowmTab(BigInteger, int,
+     * int)}.
+     * @param exponents Exponents.
+     * @return Powers of the basis of the table modulo the modulus.
+     * @throws IllegalStateException If this context or the table has
+     * been freed.
+     * @throws IllegalArgumentException If the modulus of the table
+     * differs from the modulus of this context.
+     */
+    public IntegerVector fpowm(final FpowmTab table,
+                               final IntegerVector exponents) {
+        checkTable(table);
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult =
+            VMG.group_fpowm_vec(groupPtr, table.tablePtr, exponents.data,
+                                exponents.width, width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t0, t1,
+                          modulus.bitLength(),
+                          reducedBitLength(8 * exponents.width),
+                          exponents.size());
+        return new IntegerVector(nativeResult, width);
+    }
+
+    /**
+     * Releases the native resources allocated by this instance.
+     */
+    public void free() {
+        if (groupPtr != 0) {
+            VMG.group_clear(groupPtr);
+            groupPtr = 0;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Vector of non-negative integers stored contiguously in a single
+ * byte array, where each integer is represented in unsigned
+ * big-endian byte order using a fixed number of bytes. This allows
+ * the native code to convert a complete vector in a single call
+ * instead of one call for each integer as needed for
+ * <code>BigInteger[]</code>.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class IntegerVector {
+
+    /**
+     * Integers stored consecutively in unsigned big-endian byte order.
+     */
+    final byte[] data;
+
+    /**
+     * Number of bytes used to represent each integer.
+     */
+    final int width;
+
+    /**
+     * Creates a vector of the given number of zero integers.
+     *
+     * @param size Number of integers.
+     * @param width Number of bytes used to represent each integer.
+     */
+    public IntegerVector(final int size, final int width) {
+        this(new byte[checkedLength(size, width)], width);
+    }
+
+    /**
+     * Creates a vector backed by the given array. The array is not
+     * copied.
+     *
+     * @param data Integers stored consecutively in unsigned
+     * big-endian byte order.
+     * @param width Number of bytes used to represent each integer.
+     * @throws IllegalArgumentException If the width is not positive
+     * or if the length of the array is not a multiple of the width.
+     */
+    public IntegerVector(final byte[] data, final int width) {
+        if (width <= 0 || data.length % width != 0) {
+            throw new IllegalArgumentException("Length of data is not a "
+                                               + "positive multiple of the "
+                                               + "width!");
+        }
+        this.data = data;
+        this.width = width;
+    }
+
+    /**
+     * Creates a vector from the given integers using the minimal
+     * width needed to represent all of them.
+     *
+     * @param values Non-negative integers.
+     */
+    public IntegerVector(final BigInteger[] values) {
+        this(values, minWidth(values));
+    }
+
+    /**
+     * Creates a vector from the given integers.
+     *
+     * @param values Non-negative integers.
+     * @param width Number of bytes used to represent each integer.
+     * @throws ArithmeticException If an integer is negative or does
+     * not fit in the given number of bytes.
+     */
+    public IntegerVector(final BigInteger[] values, final int width) {
+        this(values.length, width);
+        for (int i = 0; i < values.length; i++) {
+            set(i, values[i]);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the array used to store a vector
+     * of the given size and width.
+     *
+     * @param size Number of integers.
+     * @param width Number of bytes used to represent each integer.
+     * @return Number of bytes.
+     * @throws IllegalArgumentException If the parameters are invalid
+     * or the vector does not fit in an array.
+     */
+    private static int checkedLength(final int size, final int width) {
+        if (size < 0 || width <= 0) {
+            throw new IllegalArgumentException("Negative size or "
+                                               + "non-positive width!");
+        }
+        final long length = (long) size * width;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Vector is too large!");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Returns the minimal number of bytes needed to represent each of
+     * the given non-negative integers in unsigned form.
+     *
+     * @param values Non-negative integers.
+     * @return Minimal width, which is at least one.
+     */
+    static int minWidth(final BigInteger[] values) {
+        int maxBitLength = 1;
+        for (int i = 0; i < values.length; i++) {
+            maxBitLength = Math.max(maxBitLength, values[i].bitLength());
+        }
+        return byteLength(maxBitLength);
+    }
+
+    /**
+     * Returns the number of bytes needed to represent integers of the
+     * given bit length in unsigned form. Vectors of residues modulo a
+     * modulus of the given bit length should use this width.
+     *
+     * @param bitLength Bit length.
+     * @return Number of bytes.
+     */
+    public static int byteLength(final int bitLength) {
+        return (bitLength + 7) / 8;
+    }
+
+    /**
+     * Returns the number of integers in this vector.
+     *
+     * @return Number of integers in this vector.
+     */
+    public int size() {
+        return data.length / width;
+    }
+
+    /**
+     * Returns the number of bytes used to represent each integer.
+     *
+     * @return Number of bytes used to represent each integer.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the underlying array. This is not a copy, so it can be
+     * used to read and write the integers in bulk.
+     *
+     * @return Underlying array.
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * Returns the integer at the given index.
+     *
+     * @param index Index of integer.
+     * @return Integer at the given index.
+     */
+    public BigInteger get(final int index) {
+        return new BigInteger(1, Arrays.copyOfRange(data,
+                                                    index * width,
+                                                    (index + 1) * width));
+    }
+
+    /**
+     * Sets the integer at the given index.
+     *
+     * @param index Index of integer.
+     * @param value Non-negative integer.
+     * @throws ArithmeticException If the integer is negative or does
+     * not fit in the width of this vector.
+     */
+    public void set(final int index, final BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 8 * width) {
+            throw new ArithmeticException("Integer is negative or too "
+                                          + "large!");
+        }
+        final byte[] bytes = value.toByteArray();
+
+        // Skip the leading sign byte if present.
+        final int len = Math.min(bytes.length, width);
+        final int offset = index * width;
+        Arrays.fill(data, offset, offset + width - len, (byte) 0);
+        System.arraycopy(bytes, bytes.length - len,
+                         data, offset + width - len, len);
+    }
+
+    /**
+     * Returns the integers of this vector.
+     *
+     * @return Integers of this vector.
+     */
+    public BigInteger[] toBigIntegers() {
+        final BigInteger[] values = new BigInteger[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+// We use C style to name things in this file, since it should
+// correspond to the native code.
+
+//CHECKSTYLE.OFF: MethodName
+//CHECKSTYLE.OFF: ParameterName
+
+/**
+ * Backend that invokes the native routines of {@link VMG} using the
+ * Java Native Interface (JNI). This is always available.
+ *
+ * @author Douglas Wikstrom
+ */
+@SuppressWarnings("PMD.MethodNamingConventions")
+final class JNIBackend implements VMGBackend {
+
+    @Override
+    public String name() {
+        return "jni";
+    }
+
+    @Override
+    public byte[] powm(final byte[] basis,
+                       final byte[] exponent,
+                       final byte[] modulus) {
+        return VMG.powm(basis, exponent, modulus);
+    }
+
+    @Override
+    public byte[] spowm(final byte[][] bases,
+                        final byte[][] exponents,
+                        final byte[] modulus) {
+        return VMG.spowm(bases, exponents, modulus);
+    }
+
+    @Override
+    public long fpowm_precomp(final byte[] basis,
+                              final byte[] modulus,
+                              final int blockWidth,
+                              final int exponentBitlen,
+                              final int threads,
+                              final boolean lazy) {
+        return VMG.fpowm_precomp(basis, modulus, blockWidth, exponentBitlen,
+                                 threads, lazy);
+    }
+
+    @Override
+    public byte[] fpowm(final long tablePtr, final byte[] exponent) {
+        return VMG.fpowm(tablePtr, exponent);
+    }
+
+    @Override
+    public void fpowm_clear(final long tablePtr) {
+        VMG.fpowm_clear(tablePtr);
+    }
+
+    @Override
+    public int legendre(final byte[] op, final byte[] odd_prime) {
+        return VMG.legendre(op, odd_prime);
+    }
+}
+//CHECKSTYLE.ON: MethodName
+//CHECKSTYLE.ON: ParameterName
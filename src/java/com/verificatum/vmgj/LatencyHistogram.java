@@ -0,0 +1,203 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds with bounded
+ * relative error in the style of HDR histograms. Values are counted
+ * in buckets, where each power of two is divided into {@link
+ * #SUB_BUCKETS} buckets of equal width, so the relative error of a
+ * reported value is at most <code>1 / SUB_BUCKETS</code>.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Logarithm of the number of sub-buckets.
+     */
+    static final int SUB_BITS = 5;
+
+    /**
+     * Number of buckets into which each power of two is divided.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Total number of buckets, which covers all non-negative values
+     * of type <code>long</code>.
+     */
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * Counts of the buckets.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Total number of recorded values.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of recorded values.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Maximal recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Returns the index of the bucket of the given value.
+     *
+     * @param value Non-negative value.
+     * @return Index of bucket.
+     */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exp - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS
+            + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value in the bucket with the given index.
+     *
+     * @param index Index of bucket.
+     * @return Largest value in the bucket.
+     */
+    static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long low = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param nanos Latency in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return Number of recorded values.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return Mean of recorded values, or zero if no value has been
+     * recorded.
+     */
+    public double mean() {
+        final long c = count.get();
+        return c == 0 ? 0.0 : (double) sum.get() / c;
+    }
+
+    /**
+     * Returns the maximal recorded value.
+     *
+     * @return Maximal recorded value.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded
+     * values with relative error at most <code>1 /
+     * SUB_BUCKETS</code>. The result is only approximate if values are
+     * recorded concurrently.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the percentile, or zero if no value has
+     * been recorded.
+     */
+    public long percentile(final double percentile) {
+        final long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        final long rank =
+            Math.max(1, (long) Math.ceil(percentile / 100.0 * c));
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0f p50=%d p99=%d max=%d (ns)",
+                             count(), mean(), percentile(50),
+                             percentile(99), max());
+    }
+}
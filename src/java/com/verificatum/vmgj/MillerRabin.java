@@ -51,6 +51,11 @@ public class MillerRabin {
      */
     protected boolean primality;
 
+    /**
+     * Bit length of the tested integer.
+     */
+    protected int bitLength;
+
     /**
      * Initializes the Miller-Rabin test for the given
      * integers. Please use the method {@link #trial()} and read the
@@ -68,6 +73,7 @@ public class MillerRabin {
                                           + "integer!");
         }
         this.primality = primality;
+        this.bitLength = n.bitLength();
         if (primality) {
             statePtr = VMG.millerrabin_init(n.toByteArray(), search);
         } else {
@@ -125,7 +131,14 @@ public class MillerRabin {
      * <code>true</code> otherwise.
      */
     public boolean once(final BigInteger base) {
-        return VMG.millerrabin_once(statePtr, base.toByteArray()) == 1;
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBase = base.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final int result = VMG.millerrabin_once(statePtr, nativeBase);
+        final long t2 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.MILLERRABIN, t0, t1, t2,
+                          bitLength, bitLength, 1);
+        return result == 1;
     }
 
     /**
@@ -138,9 +151,16 @@ public class MillerRabin {
      * <code>true</code> otherwise.
      */
     public boolean once(final BigInteger base, final int index) {
-        return VMG.millerrabin_safe_once(statePtr,
-                                         base.toByteArray(),
-                                         index) == 1;
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeBase = base.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        final int result = VMG.millerrabin_safe_once(statePtr,
+                                                     nativeBase,
+                                                     index);
+        final long t2 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.MILLERRABIN, t0, t1, t2,
+                          bitLength, bitLength, 1);
+        return result == 1;
     }
 
     /**
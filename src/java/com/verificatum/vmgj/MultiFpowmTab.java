@@ -0,0 +1,225 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+
+/**
+ * Fixed-basis exponentiation tables for several bases with a common
+ * modulus, e.g., the generator <i>g</i> and public key <i>h</i> of
+ * El Gamal, where each encryption computes <i>g^r</i> and <i>h^r</i>
+ * for the same random exponent <i>r</i>.
+ *
+ * <p>
+ *
+ * The tables have identical parameters, so each exponent is recoded
+ * once and the recoding is used with every table. All powers of an
+ * exponent are computed in a single native call, which also shares
+ * the conversion of the exponent.
+ *
+ * @author Douglas Wikstrom
+ */
+public class MultiFpowmTab {
+
+    /**
+     * Stores native pointer to the precomputed tables.
+     */
+    protected long tablePtr;
+
+    /**
+     * Number of bases.
+     */
+    protected int numberOfBases;
+
+    /**
+     * Number of bytes needed to represent residues modulo the
+     * modulus in unsigned form.
+     */
+    protected int width;
+
+    /**
+     * Creates precomputed tables for the given bases, modulus, and
+     * exponent bit length using the default block width and a single
+     * thread.
+     *
+     * @param bases Basis elements.
+     * @param modulus Modulus used during modular exponentiations.
+     * @param exponentBitlen Expected bit length of exponents used when
+     * invoking the tables.
+     */
+    public MultiFpowmTab(final BigInteger[] bases,
+                         final BigInteger modulus,
+                         final int exponentBitlen) {
+        this(bases, modulus, 16, exponentBitlen, 1);
+    }
+
+    /**
+     * Creates precomputed tables for the given bases, modulus, and
+     * exponent bit length.
+     *
+     * @param bases Basis elements.
+     * @param modulus Modulus used during modular exponentiations.
+     * @param blockWidth Block width of each table.
+     * @param exponentBitlen Expected bit length of exponents used when
+     * invoking the tables.
+     * @param parallelism Number of threads used for precomputation of
+     * each table.
+     * @throws IllegalArgumentException If there are no bases, if the
+     * block width is not between 1 and {@link
+     * FpowmTab#MAX_BLOCK_WIDTH}, or if the parallelism is not
+     * positive.
+     */
+    public MultiFpowmTab(final BigInteger[] bases,
+                         final BigInteger modulus,
+                         final int blockWidth,
+                         final int exponentBitlen,
+                         final int parallelism) {
+        if (bases.length == 0) {
+            throw new IllegalArgumentException("No bases!");
+        }
+        if (blockWidth < 1 || blockWidth > FpowmTab.MAX_BLOCK_WIDTH) {
+            throw new IllegalArgumentException("Block width is not between "
+                                               + "1 and "
+                                               + FpowmTab.MAX_BLOCK_WIDTH
+                                               + "!");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Non-positive parallelism!");
+        }
+        numberOfBases = bases.length;
+        width = IntegerVector.byteLength(modulus.bitLength());
+        final long t0 = VMGMonitor.start();
+        final byte[][] nativeBases = new byte[bases.length][];
+        for (int j = 0; j < bases.length; j++) {
+            nativeBases[j] = bases[j].toByteArray();
+        }
+        final byte[] nativeModulus = modulus.toByteArray();
+        final long t1 = VMGMonitor.split(t0);
+        tablePtr = VMG.fpowm_multi_precomp(nativeBases, nativeModulus,
+                                           blockWidth, exponentBitlen,
+                                           parallelism);
+        final long t2 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.PRECOMP, t0, t1, t2,
+                          modulus.bitLength(), exponentBitlen,
+                          bases.length);
+    }
+
+    /**
+     * Returns the number of bases of this instance.
+     *
+     * @return Number of bases.
+     */
+    public int numberOfBases() {
+        return numberOfBases;
+    }
+
+    /**
+     * Verifies that the native resources have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    private void checkAllocated() {
+        if (tablePtr == 0) {
+            throw new IllegalStateException("Tables have been freed!");
+        }
+    }
+
+    /**
+     * Computes the powers of all bases to the given exponent.
+     *
+     * @param exponent Non-negative exponent.
+     * @return Powers of the bases in the order they were given to
+     * the constructor.
+     * @throws ArithmeticException If the exponent is negative.
+     * @throws IllegalStateException If the tables have been freed.
+     */
+    public BigInteger[] fpowm(final BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            throw new ArithmeticException("Negative exponent!");
+        }
+        final IntegerVector exponents =
+            new IntegerVector(new BigInteger[] {exponent});
+        final IntegerVector[] powers = fpowm(exponents);
+        final BigInteger[] results = new BigInteger[numberOfBases];
+        for (int j = 0; j < numberOfBases; j++) {
+            results[j] = powers[j].get(0);
+        }
+        return results;
+    }
+
+    /**
+     * Computes the powers of all bases to each exponent of the given
+     * vector.
+     *
+     * @param exponents Exponents.
+     * @return Array with one vector for each basis, in the order the
+     * bases were given to the constructor, where the ith component
+     * of a vector is the basis raised to the ith exponent.
+     * @throws IllegalArgumentException If the powers do not fit in an
+     * array.
+     * @throws IllegalStateException If the tables have been freed.
+     */
+    public IntegerVector[] fpowm(final IntegerVector exponents) {
+        checkAllocated();
+        final int size = exponents.size();
+        if ((long) numberOfBases * size * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Powers do not fit in an "
+                                               + "array!");
+        }
+        final long t0 = VMGMonitor.start();
+        final byte[] nativeResult = VMG.fpowm_multi_vec(tablePtr,
+                                                        exponents.data,
+                                                        exponents.width,
+                                                        width);
+        final long t1 = VMGMonitor.split(t0);
+
+        // The native results are ordered by basis, so each vector is
+        // a contiguous part.
+        final IntegerVector[] results = new IntegerVector[numberOfBases];
+        final int length = size * width;
+        for (int j = 0; j < numberOfBases; j++) {
+            final byte[] data = new byte[length];
+            System.arraycopy(nativeResult, j * length, data, 0, length);
+            results[j] = new IntegerVector(data, width);
+        }
+        VMGMonitor.record(VMGMonitor.Operation.FPOWM, t0, t0, t1,
+                          8 * width, 8 * exponents.width,
+                          numberOfBases * size);
+        return results;
+    }
+
+    /**
+     * Release resources allocated by native code.
+     */
+    public void free() {
+        if (tablePtr != 0) {
+            VMG.fpowm_multi_clear(tablePtr);
+            tablePtr = 0;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event committed by {@link VMGMonitor} for each
+ * monitored native operation while a recording is running.
+ *
+ * @author Douglas Wikstrom
+ */
+@Name("com.verificatum.vmgj.NativeCall")
+@Label("VMGJ Native Call")
+@Category({"Verificatum", "VMGJ"})
+@Description("Native operation invoked through VMGJ with the time spent "
+             + "in conversions and computation.")
+@StackTrace(false)
+final class NativeCallEvent extends Event {
+
+    /**
+     * Name of the operation.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * Name of the backend.
+     */
+    @Label("Backend")
+    String backend;
+
+    /**
+     * Bit length of the modulus.
+     */
+    @Label("Modulus Bit Length")
+    int modulusBitLength;
+
+    /**
+     * Bit length of the (largest) exponent.
+     */
+    @Label("Exponent Bit Length")
+    int exponentBitLength;
+
+    /**
+     * Number of integers processed.
+     */
+    @Label("Batch Size")
+    int batchSize;
+
+    /**
+     * Time spent converting between <code>BigInteger</code> and byte
+     * arrays in Java.
+     */
+    @Label("Java Conversion Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long javaConversionTime;
+
+    /**
+     * Time spent converting between byte arrays and GMP integers in
+     * native code.
+     */
+    @Label("Native Conversion Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long nativeConversionTime;
+
+    /**
+     * Time spent computing in native code.
+     */
+    @Label("Compute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long computeTime;
+
+    /**
+     * Event of the operation most recently started by each thread.
+     */
+    private static final ThreadLocal<NativeCallEvent> STARTED =
+        new ThreadLocal<NativeCallEvent>();
+
+    /**
+     * Output of {@link VMGMonitor#start()} for the operation of this
+     * event, which identifies the operation. This is not part of the
+     * event, since it is transient.
+     */
+    private transient long start;
+
+    /**
+     * Creates an event for an operation started by the current thread
+     * and begins timing it.
+     *
+     * @param start Output of {@link VMGMonitor#start()} for the
+     * operation.
+     */
+    static void begin(final long start) {
+        final NativeCallEvent event = new NativeCallEvent();
+        event.start = start;
+        event.begin();
+        STARTED.set(event);
+    }
+
+    /**
+     * Returns the event of an operation started by the current thread
+     * using {@link #begin(long)}. If there is no such event, e.g., if
+     * the recording was started during the operation or the
+     * operation contains another monitored operation, then a new
+     * event that begins now is returned.
+     *
+     * @param start Output of {@link VMGMonitor#start()} for the
+     * operation.
+     * @return Event of the operation.
+     */
+    static NativeCallEvent started(final long start) {
+        NativeCallEvent event = STARTED.get();
+        if (event == null || event.start != start) {
+            event = new NativeCallEvent();
+            event.begin();
+        } else {
+            STARTED.remove();
+        }
+        return event;
+    }
+
+    /**
+     * Registers a listener that informs {@link VMGMonitor} when a
+     * recording is started or stopped.
+     */
+    static void listen() {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recorderInitialized(final FlightRecorder
+                                                recorder) {
+                    update(recorder);
+                }
+
+                @Override
+                public void recordingStateChanged(final Recording
+                                                  recording) {
+                    update(FlightRecorder.getFlightRecorder());
+                }
+            });
+    }
+
+    /**
+     * Informs {@link VMGMonitor} if any recording is running.
+     *
+     * @param recorder Flight recorder.
+     */
+    static void update(final FlightRecorder recorder) {
+        boolean running = false;
+        for (final Recording recording : recorder.getRecordings()) {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        VMGMonitor.setRecording(running);
+    }
+}
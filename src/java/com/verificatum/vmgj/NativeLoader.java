@@ -0,0 +1,347 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Loads the native library used by {@link VMG}. The jar file may
+ * bundle several builds of the native library for each platform,
+ * e.g., a generic build and a build linked with a version of GMP that
+ * uses BMI2 and ADX instructions. In this case the CPU is inspected
+ * and the most specific build supported by the CPU is extracted to a
+ * temporary file and loaded. Otherwise the library is loaded from
+ * <code>java.library.path</code> as usual.
+ *
+ * <p>
+ *
+ * The bundled builds for a platform are stored in the directory
+ * <code>com/verificatum/vmgj/native/&lt;os&gt;-&lt;arch&gt;/</code>
+ * of the jar file, e.g., <code>linux-x86_64</code>. The file
+ * <code>variants</code> in this directory contains one line for each
+ * build consisting of the name of the build followed by the CPU flags
+ * it requires, e.g., <code>bmi2-adx bmi2 adx</code>, and the library
+ * of a build is stored in a subdirectory with the name of the build.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class NativeLoader {
+
+    /**
+     * Name of the system property that can be used to give the
+     * absolute path to the native library. This takes precedence over
+     * everything else.
+     */
+    public static final String LIBRARY_PROPERTY =
+        "com.verificatum.vmgj.library";
+
+    /**
+     * Name of the system property that can be used to force a given
+     * bundled build.
+     */
+    public static final String VARIANT_PROPERTY =
+        "com.verificatum.vmgj.variant";
+
+    /**
+     * Name of the variant reported if the library is loaded from the
+     * path given by {@link #LIBRARY_PROPERTY}.
+     */
+    public static final String FILE_VARIANT = "file";
+
+    /**
+     * Name of the variant reported if the library is loaded from
+     * <code>java.library.path</code>.
+     */
+    public static final String SYSTEM_VARIANT = "system";
+
+    /**
+     * Root of the bundled native libraries in the jar file.
+     */
+    static final String RESOURCE_ROOT = "/com/verificatum/vmgj/native/";
+
+    /**
+     * Name of the index of bundled builds of a platform.
+     */
+    static final String VARIANTS_INDEX = "variants";
+
+    /**
+     * Name of the loaded variant, or <code>null</code> if the library
+     * has not been loaded.
+     */
+    private static String variant;
+
+    /**
+     * Avoid accidental instantiation.
+     */
+    private NativeLoader() {
+    }
+
+    /**
+     * Loads the native library with the given name unless it has
+     * already been loaded.
+     *
+     * @param libraryName Name of library as passed to {@link
+     * System#loadLibrary(String)}.
+     * @throws UnsatisfiedLinkError If the library can not be loaded.
+     */
+    static synchronized void load(final String libraryName) {
+
+        if (variant != null) {
+            return;
+        }
+
+        final String path = System.getProperty(LIBRARY_PROPERTY);
+        if (path != null) {
+            System.load(new File(path).getAbsolutePath());
+            variant = FILE_VARIANT;
+            return;
+        }
+
+        final String platform = platform();
+        final String chosen =
+            chooseVariant(platform, System.getProperty(VARIANT_PROPERTY));
+
+        if (chosen == null) {
+            System.loadLibrary(libraryName);
+            variant = SYSTEM_VARIANT;
+        } else {
+            System.load(extract(platform, chosen, libraryName).toString());
+            variant = chosen;
+        }
+    }
+
+    /**
+     * Returns the name of the loaded variant of the native library,
+     * i.e., the name of a bundled build, {@link #FILE_VARIANT}, or
+     * {@link #SYSTEM_VARIANT}.
+     *
+     * @return Name of the loaded variant or <code>null</code> if the
+     * library has not been loaded.
+     */
+    public static synchronized String variant() {
+        return variant;
+    }
+
+    /**
+     * Returns the name of the current platform in the form used for
+     * the directories of bundled builds.
+     *
+     * @return Name of the current platform.
+     */
+    static String platform() {
+
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        if (os.startsWith("mac")) {
+            os = "darwin";
+        } else if (os.startsWith("windows")) {
+            os = "windows";
+        } else {
+            os = os.replaceAll("[^a-z0-9]", "");
+        }
+
+        String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        if ("amd64".equals(arch) || "x64".equals(arch)) {
+            arch = "x86_64";
+        } else if ("arm64".equals(arch)) {
+            arch = "aarch64";
+        }
+
+        return os + "-" + arch;
+    }
+
+    /**
+     * Returns the flags of the CPU as reported by the operating
+     * system. This is currently only implemented for Linux. For other
+     * platforms the empty set is returned, which means that only
+     * builds that do not require any flags are considered.
+     *
+     * @return Flags of the CPU.
+     */
+    static Set<String> cpuFlags() {
+
+        final Path cpuinfo = Paths.get("/proc/cpuinfo");
+        if (!Files.isReadable(cpuinfo)) {
+            return Collections.emptySet();
+        }
+
+        try (BufferedReader br =
+             Files.newBufferedReader(cpuinfo, StandardCharsets.US_ASCII)) {
+
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                // The flags are called "Features" on ARM.
+                if (line.startsWith("flags") || line.startsWith("Features")) {
+                    final int i = line.indexOf(':');
+                    final String[] flags = line.substring(i + 1).trim()
+                        .split("\\s+");
+                    return new HashSet<String>(Arrays.asList(flags));
+                }
+            }
+        } catch (final IOException ioe) {
+            // We fall back on the generic build below.
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * Chooses the bundled build to load. If a build is forced, then
+     * it must be bundled. Otherwise the build supported by the CPU
+     * that requires the largest number of CPU flags is chosen.
+     *
+     * @param platform Name of the platform.
+     * @param forced Name of a forced build or <code>null</code>.
+     * @return Name of the chosen build, or <code>null</code> if there
+     * is no bundled build for the platform.
+     * @throws UnsatisfiedLinkError If the forced build is not bundled.
+     */
+    static String chooseVariant(final String platform, final String forced) {
+
+        final InputStream is = NativeLoader.class
+            .getResourceAsStream(RESOURCE_ROOT + platform + "/"
+                                 + VARIANTS_INDEX);
+        if (is == null) {
+            if (forced == null) {
+                return null;
+            }
+            throw new UnsatisfiedLinkError("No bundled native libraries "
+                                           + "for " + platform + "!");
+        }
+
+        final Set<String> cpuFlags = cpuFlags();
+
+        String best = null;
+        int bestSize = -1;
+
+        try (BufferedReader br =
+             new BufferedReader(new InputStreamReader(is,
+                                                      StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                final String[] words = line.trim().split("\\s+");
+                if (words[0].isEmpty() || words[0].startsWith("#")) {
+                    continue;
+                }
+
+                final Set<String> required = new HashSet<String>(
+                    Arrays.asList(words).subList(1, words.length));
+
+                if (forced == null) {
+                    if (cpuFlags.containsAll(required)
+                        && required.size() > bestSize) {
+                        best = words[0];
+                        bestSize = required.size();
+                    }
+                } else if (forced.equals(words[0])) {
+                    return forced;
+                }
+            }
+        } catch (final IOException ioe) {
+            throw new UnsatisfiedLinkError("Unable to read index of bundled "
+                                           + "native libraries! ("
+                                           + ioe.getMessage() + ")");
+        }
+
+        if (forced != null) {
+            throw new UnsatisfiedLinkError("Native library variant " + forced
+                                           + " is not bundled for "
+                                           + platform + "!");
+        }
+        return best;
+    }
+
+    /**
+     * Extracts the given bundled build to a temporary file that is
+     * deleted when the JVM exits.
+     *
+     * @param platform Name of the platform.
+     * @param name Name of the build.
+     * @param libraryName Name of library as passed to {@link
+     * System#loadLibrary(String)}.
+     * @return Path to the extracted library.
+     * @throws UnsatisfiedLinkError If the library can not be
+     * extracted.
+     */
+    static Path extract(final String platform,
+                        final String name,
+                        final String libraryName) {
+
+        final String fileName = System.mapLibraryName(libraryName);
+        final String resource =
+            RESOURCE_ROOT + platform + "/" + name + "/" + fileName;
+
+        try (InputStream is = NativeLoader.class.getResourceAsStream(resource)) {
+
+            if (is == null) {
+                throw new UnsatisfiedLinkError("Missing bundled native "
+                                               + "library! (" + resource
+                                               + ")");
+            }
+
+            final Path dir = Files.createTempDirectory("vmgj-");
+            final Path path = dir.resolve(fileName);
+            dir.toFile().deleteOnExit();
+            path.toFile().deleteOnExit();
+
+            Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+
+            return path;
+
+        } catch (final IOException ioe) {
+            throw new UnsatisfiedLinkError("Unable to extract bundled native "
+                                           + "library! (" + ioe.getMessage()
+                                           + ")");
+        }
+    }
+
+    /**
+     * Loads the native library and prints the name of the loaded
+     * variant. This is used by <code>vmgj-info</code>.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(final String[] args) {
+        VMG.backend();
+        System.out.print(variant());
+    }
+}
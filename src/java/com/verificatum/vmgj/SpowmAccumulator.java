@@ -0,0 +1,226 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Computes a simultaneous modular exponentiation of bases and
+ * exponents that are given in chunks, e.g., as they are read from
+ * disk. Each chunk is folded into a running product in native space,
+ * so memory is bounded by the size of a chunk rather than the size of
+ * the complete input. Bases and exponents may also be added one at a
+ * time, in which case they are buffered until a chunk is complete.
+ * Bases and exponents must be non-negative.
+ *
+ * <p>
+ *
+ * The native resources must be released using {@link #free()}.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class SpowmAccumulator {
+
+    /**
+     * Default number of buffered bases and exponents.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /**
+     * Stores native pointer to the running product.
+     */
+    private long accPtr;
+
+    /**
+     * Bit length of the modulus.
+     */
+    private int modulusBitLength;
+
+    /**
+     * Buffered bases.
+     */
+    private BigInteger[] bases;
+
+    /**
+     * Buffered exponents.
+     */
+    private BigInteger[] exponents;
+
+    /**
+     * Number of buffered bases and exponents.
+     */
+    private int buffered;
+
+    /**
+     * Creates an accumulator with the default chunk size.
+     *
+     * @param modulus Modulus.
+     */
+    public SpowmAccumulator(final BigInteger modulus) {
+        this(modulus, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an accumulator.
+     *
+     * @param modulus Modulus.
+     * @param chunkSize Number of bases and exponents added using
+     * {@link #add(BigInteger, BigInteger)} that are buffered before
+     * they are folded into the running product.
+     * @throws IllegalArgumentException If the chunk size is not
+     * positive.
+     */
+    public SpowmAccumulator(final BigInteger modulus, final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Non-positive chunk size!");
+        }
+        this.modulusBitLength = modulus.bitLength();
+        this.bases = new BigInteger[chunkSize];
+        this.exponents = new BigInteger[chunkSize];
+        this.accPtr = VMG.spowm_acc_init(modulus.toByteArray());
+    }
+
+    /**
+     * Verifies that the native resources have not been released.
+     *
+     * @throws IllegalStateException If {@link #free()} has been
+     * called.
+     */
+    private void checkAllocated() {
+        if (accPtr == 0) {
+            throw new IllegalStateException("Accumulator has been freed!");
+        }
+    }
+
+    /**
+     * Adds a single basis and exponent.
+     *
+     * @param basis Non-negative basis integer.
+     * @param exponent Non-negative exponent.
+     * @throws ArithmeticException If the basis or exponent is
+     * negative.
+     */
+    public void add(final BigInteger basis, final BigInteger exponent) {
+        Objects.requireNonNull(basis);
+        Objects.requireNonNull(exponent);
+        if (basis.signum() < 0 || exponent.signum() < 0) {
+            throw new ArithmeticException("Negative basis or exponent!");
+        }
+        checkAllocated();
+        bases[buffered] = basis;
+        exponents[buffered] = exponent;
+        buffered++;
+        if (buffered == bases.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Folds the buffered bases and exponents into the running
+     * product. The buffer is only cleared if this succeeds.
+     */
+    private void flush() {
+        if (buffered > 0) {
+            final BigInteger[] b = new BigInteger[buffered];
+            final BigInteger[] e = new BigInteger[buffered];
+            System.arraycopy(bases, 0, b, 0, buffered);
+            System.arraycopy(exponents, 0, e, 0, buffered);
+            update(b, e);
+            for (int i = 0; i < buffered; i++) {
+                bases[i] = null;
+                exponents[i] = null;
+            }
+            buffered = 0;
+        }
+    }
+
+    /**
+     * Folds a chunk of bases and exponents into the running product.
+     *
+     * @param bases Non-negative basis integers.
+     * @param exponents Non-negative exponents.
+     * @throws IllegalArgumentException If the arrays have different
+     * lengths.
+     * @throws ArithmeticException If a basis or exponent is negative.
+     */
+    public void update(final BigInteger[] bases,
+                       final BigInteger[] exponents) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("Arrays have different "
+                                               + "lengths!");
+        }
+        update(new IntegerVector(bases), new IntegerVector(exponents));
+    }
+
+    /**
+     * Folds a chunk of packed bases and exponents into the running
+     * product.
+     *
+     * @param bases Non-negative basis integers.
+     * @param exponents Non-negative exponents.
+     * @throws IllegalArgumentException If the vectors have different
+     * sizes.
+     */
+    public void update(final IntegerVector bases,
+                       final IntegerVector exponents) {
+        VMG.checkSizes(bases, exponents);
+        checkAllocated();
+        final long t0 = VMGMonitor.start();
+        VMG.spowm_acc_update(accPtr,
+                             bases.data, bases.width,
+                             exponents.data, exponents.width);
+        final long t1 = VMGMonitor.split(t0);
+        VMGMonitor.record(VMGMonitor.Operation.SPOWM, t0, t0, t1,
+                          modulusBitLength, 8 * exponents.width,
+                          bases.size());
+    }
+
+    /**
+     * Returns the product of all bases added so far to the powers of
+     * the corresponding exponents modulo the modulus. More bases and
+     * exponents may be added afterwards.
+     *
+     * @return Simultaneous modular exponentiation.
+     */
+    public BigInteger result() {
+        checkAllocated();
+        flush();
+        return new BigInteger(VMG.spowm_acc_result(accPtr));
+    }
+
+    /**
+     * Releases the native resources allocated by this instance.
+     */
+    public void free() {
+        if (accPtr != 0) {
+            VMG.spowm_acc_clear(accPtr);
+            accPtr = 0;
+        }
+    }
+}
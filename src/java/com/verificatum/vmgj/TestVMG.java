@@ -27,8 +27,29 @@
 
 package com.verificatum.vmgj;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 // We use C style to name things in this file, since it should
 // correspond to the native code.
@@ -62,142 +83,1434 @@ public final class TestVMG {
      */
     static final int DEFAULT_TEST_TIME = 2000;
 
+    /**
+     * Default number of milliseconds of each round of the stress
+     * test.
+     */
+    static final int DEFAULT_STRESS_TIME = 5000;
+
+    /**
+     * Number of rounds of the stress test. The first round warms up
+     * the JVM and the allocators, and the resident set size after it
+     * is compared with the resident set size after the last round.
+     */
+    static final int STRESS_ROUNDS = 4;
+
+    /**
+     * Maximal growth in bytes of the resident set size tolerated
+     * between the first and the last round of the stress test.
+     */
+    static final long MAX_RSS_GROWTH = 64L * 1024 * 1024;
+
+    /**
+     * Names of the operations executed by the stress test, in the
+     * order they are executed. The FFM operation uses the JNI backend
+     * if the FFM backend is not available.
+     */
+    static final String[] STRESS_OPERATIONS = {
+        "powm", "spowm", "fpowm (shared)", "fpowm (unshared)",
+        "fpowm_multi (shared)", "crt (shared)", "spowm_acc (unshared)",
+        "sqrtm", "async (shared)", "vec (shared)", "fpowm_prg (shared)",
+        "fpowm (lazy)", "bulk (shared)", "ffm (shared)",
+        "millerrabin (unshared)"
+    };
+
     /**
      * Convenience method for bounding the execution time of a test.
      *
-     * @param t Time when the test started.
-     * @param milliSecs Milliseconds the should proceed.
-     * @return True if the deadline has passed and false otherwise.
+     * @param t Time when the test started.
+     * @param milliSecs Milliseconds the should proceed.
+     * @return True if the deadline has passed and false otherwise.
+     */
+    private static boolean done(final long t, final long milliSecs) {
+        return System.currentTimeMillis() > t + milliSecs;
+    }
+
+    /**
+     * Tests exponentiation.
+     *
+     * @param bitLength Number of bits of integers.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_powm(final int bitLength, final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        // Test optimized code.
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus = new BigInteger(bitLength, random);
+            final BigInteger basis = new BigInteger(bitLength, random);
+            final BigInteger exponent = new BigInteger(bitLength, random);
+
+            final BigInteger vmg = VMG.powm(basis, exponent, modulus);
+            final BigInteger java = basis.modPow(exponent, modulus);
+
+            assert vmg.equals(java) : "Fixed basis exponentiation failed!";
+        }
+    }
+
+    /**
+     * Tests that the JNI and FFM backends give identical results on
+     * identical inputs, since only one of them is used by the
+     * routines of {@link VMG}. This does nothing unless the FFM
+     * backend is chosen and available.
+     *
+     * @param bitLength Number of bits of integers.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_backends(final int bitLength,
+                                        final long milliSecs) {
+
+        if (VMG.FFM == null) {
+            return;
+        }
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 5;
+
+        final BigInteger prime = BigInteger.probablePrime(bitLength, random);
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus =
+                new BigInteger(bitLength, random).setBit(0);
+            final byte[] nativeModulus = modulus.toByteArray();
+
+            final byte[][] bases = new byte[len][];
+            final byte[][] exponents = new byte[len][];
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random).toByteArray();
+                exponents[l] = new BigInteger(bitLength, random).toByteArray();
+            }
+
+            for (int l = 0; l < len; l++) {
+                assert Arrays.equals(VMG.JNI.powm(bases[l], exponents[l],
+                                                  nativeModulus),
+                                     VMG.FFM.powm(bases[l], exponents[l],
+                                                  nativeModulus))
+                    : "Backends disagree on exponentiation!";
+            }
+
+            assert Arrays.equals(VMG.JNI.spowm(bases, exponents,
+                                               nativeModulus),
+                                 VMG.FFM.spowm(bases, exponents,
+                                               nativeModulus))
+                : "Backends disagree on simultaneous exponentiation!";
+
+            final long tablePtr =
+                VMG.JNI.fpowm_precomp(bases[0], nativeModulus, 4,
+                                      bitLength, 1, false);
+            for (int l = 0; l < len; l++) {
+                assert Arrays.equals(VMG.JNI.fpowm(tablePtr, exponents[l]),
+                                     VMG.FFM.fpowm(tablePtr, exponents[l]))
+                    : "Backends disagree on fixed-basis exponentiation!";
+            }
+            VMG.JNI.fpowm_clear(tablePtr);
+
+            final byte[] nativePrime = prime.toByteArray();
+            for (int l = 0; l < len; l++) {
+                assert VMG.JNI.legendre(bases[l], nativePrime)
+                    == VMG.FFM.legendre(bases[l], nativePrime)
+                    : "Backends disagree on Legendre symbol!";
+            }
+        }
+    }
+
+    /**
+     * Test simultaneous exponentiation.
+     *
+     * @param bitLength Number of bits of integers.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_spowm(final int bitLength,
+                                     final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 50;
+
+        // Generate random modulus.
+        final BigInteger modulus = new BigInteger(bitLength, random);
+
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random).mod(modulus);
+                exponents[l] = new BigInteger(bitLength, random);
+            }
+
+            final BigInteger vmg = VMG.spowm(bases, exponents, modulus);
+
+            BigInteger res = BigInteger.ONE;
+            for (int l = 0; l < len; l++) {
+                res = res.multiply(bases[l].modPow(exponents[l], modulus));
+                res = res.mod(modulus);
+            }
+
+            assert vmg.equals(res) : "Failed to simultanously exponentiate!";
+        }
+    }
+
+    /**
+     * Tests streaming simultaneous exponentiation.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_spowm_acc(final int bitLength,
+                                         final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 50;
+        final int split = 20;
+
+        // Generate random modulus.
+        final BigInteger modulus = new BigInteger(bitLength, random);
+
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
+        final BigInteger[] chunkBases = new BigInteger[len - split];
+        final BigInteger[] chunkExponents = new BigInteger[len - split];
+
+        final SpowmAccumulator empty = new SpowmAccumulator(modulus);
+        assert empty.result().equals(BigInteger.ONE.mod(modulus))
+            : "Failed to compute empty product!";
+        empty.free();
+
+        // A negative basis is rejected before it is buffered.
+        final SpowmAccumulator negative = new SpowmAccumulator(modulus);
+        boolean rejected = false;
+        try {
+            negative.add(BigInteger.ONE.negate(), BigInteger.ONE);
+        } catch (ArithmeticException ae) {
+            rejected = true;
+        }
+        assert rejected : "Accepted negative basis!";
+        assert negative.result().equals(BigInteger.ONE.mod(modulus))
+            : "Buffered rejected basis!";
+        negative.free();
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random).mod(modulus);
+                exponents[l] = new BigInteger(bitLength, random);
+            }
+            System.arraycopy(bases, split, chunkBases, 0, len - split);
+            System.arraycopy(exponents, split, chunkExponents, 0, len - split);
+
+            // Use a chunk size that does not divide the number of
+            // added integers to exercise buffering.
+            final SpowmAccumulator acc = new SpowmAccumulator(modulus, 7);
+            for (int l = 0; l < split; l++) {
+                acc.add(bases[l], exponents[l]);
+            }
+            acc.update(new IntegerVector(chunkBases),
+                       new IntegerVector(chunkExponents));
+            final BigInteger res = acc.result();
+            acc.free();
+
+            assert res.equals(VMG.spowm(bases, exponents, modulus))
+                : "Failed to accumulate simultaneous exponentiation!";
+        }
+    }
+
+    /**
+     * Tests fixed-basis exponentiation.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_fpowm(final int bitLength,
+                                     final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        // Generate random modulus.
+        final BigInteger modulus = new BigInteger(bitLength, random);
+        final BigInteger basis = new BigInteger(bitLength, random);
+        final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
+
+        // Test optimized code.
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger exponent = new BigInteger(bitLength, random);
+            final BigInteger vmg = tab.fpowm(exponent);
+            final BigInteger res = basis.modPow(exponent, modulus);
+
+            assert vmg.equals(res) : "Failed to fixed-basis exponentiate!";
+        }
+    }
+
+    /**
+     * Tests fixed-basis exponentiation with parallel and lazy
+     * precomputation.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_fpowm_par(final int bitLength,
+                                         final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        // Number of exponentiations computed before a lazy table was
+        // ready.
+        int early = 0;
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus = new BigInteger(bitLength, random);
+            final BigInteger basis = new BigInteger(bitLength, random);
+
+            final FpowmTab par = new FpowmTab(basis, modulus, 12, bitLength,
+                                              4, false);
+            assert par.isReady() : "Failed to complete precomputation!";
+
+            // Exponentiations are correct before the table is ready. The
+            // table is large, so it is not ready immediately.
+            final FpowmTab lazy = new FpowmTab(basis, modulus, 16, bitLength,
+                                               1, true);
+            if (!lazy.isReady()) {
+                final BigInteger exponent = new BigInteger(bitLength, random);
+                assert lazy.fpowm(exponent)
+                    .equals(basis.modPow(exponent, modulus))
+                    : "Failed to exponentiate during lazy precomputation!";
+                early++;
+            }
+            lazy.awaitReady();
+            assert lazy.isReady() : "Failed to await precomputation!";
+
+            // Exponents that are too long for the table are also
+            // handled.
+            final BigInteger[] exponents = {
+                BigInteger.ZERO,
+                BigInteger.ONE,
+                new BigInteger(bitLength, random),
+                new BigInteger(bitLength + 20, random).setBit(bitLength + 19)
+            };
+            for (final BigInteger exponent : exponents) {
+                final BigInteger res = basis.modPow(exponent, modulus);
+                assert par.fpowm(exponent).equals(res)
+                    && lazy.fpowm(exponent).equals(res)
+                    : "Failed to fixed-basis exponentiate with parallel "
+                    + "precomputation!";
+            }
+            par.free();
+            lazy.free();
+        }
+        assert early > 0 : "Failed to exponentiate before lazy table was "
+            + "ready!";
+    }
+
+    /**
+     * Tests fixed-basis tables created within a memory budget.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_fpowm_budget(final int bitLength,
+                                            final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final long budget = 64 * 1024;
+
+        // The size is exact, so the table is the largest that fits.
+        final int blockWidth = FpowmTab.blockWidth(bitLength, bitLength,
+                                                   budget);
+        assert FpowmTab.byteSize(bitLength, blockWidth) <= budget
+            && FpowmTab.byteSize(bitLength, blockWidth + 1) > budget
+            : "Failed to choose block width within budget!";
+
+        boolean rejected = false;
+        try {
+            FpowmTab.blockWidth(bitLength, bitLength, 1);
+        } catch (final IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Failed to reject too small budget!";
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus = new BigInteger(bitLength, random);
+            final BigInteger basis = new BigInteger(bitLength, random);
+
+            final FpowmTab tab =
+                FpowmTab.withMemoryBudget(basis, modulus, bitLength, budget,
+                                          1, false);
+            assert tab.blockWidth() == blockWidth
+                && tab.byteSize() <= budget
+                : "Failed to create table within budget!";
+
+            final BigInteger exponent = new BigInteger(bitLength, random);
+            assert tab.fpowm(exponent).equals(basis.modPow(exponent,
+                                                           modulus))
+                : "Failed to fixed-basis exponentiate with budget!";
+            tab.free();
+        }
+    }
+
+    /**
+     * Tests fixed-basis exponentiation of several bases with a shared
+     * exponent.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_fpowm_multi(final int bitLength,
+                                           final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 5;
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus =
+                new BigInteger(bitLength, random).setBit(0);
+            final BigInteger[] bases = new BigInteger[3];
+            for (int j = 0; j < bases.length; j++) {
+                bases[j] = new BigInteger(2 * bitLength, random);
+            }
+
+            // The last exponent is longer than the tables allow, so
+            // it is computed without them.
+            final BigInteger[] exponents = new BigInteger[len];
+            for (int i = 0; i < len; i++) {
+                exponents[i] = new BigInteger(bitLength, random);
+            }
+            exponents[0] = BigInteger.ZERO;
+            exponents[len - 1] = new BigInteger(2 * bitLength, random);
+
+            final MultiFpowmTab tab =
+                new MultiFpowmTab(bases, modulus, 7, bitLength, 2);
+            assert tab.numberOfBases() == bases.length
+                : "Wrong number of bases!";
+
+            final IntegerVector[] vpowers =
+                tab.fpowm(new IntegerVector(exponents));
+            for (int i = 0; i < len; i++) {
+                final BigInteger[] powers = tab.fpowm(exponents[i]);
+                for (int j = 0; j < bases.length; j++) {
+                    final BigInteger res =
+                        bases[j].modPow(exponents[i], modulus);
+                    assert powers[j].equals(res)
+                        && vpowers[j].get(i).equals(res)
+                        : "Failed to fixed-basis exponentiate several "
+                        + "bases!";
+                }
+            }
+            tab.free();
+        }
+
+        final BigInteger modulus = new BigInteger(bitLength, random).setBit(0);
+        final BigInteger[] bases = {
+            new BigInteger(bitLength, random),
+            new BigInteger(bitLength, random)
+        };
+        final MultiFpowmTab tab =
+            new MultiFpowmTab(bases, modulus, 1, bitLength, 1);
+
+        // Powers that do not fit in an array are rejected.
+        final int width = IntegerVector.byteLength(modulus.bitLength());
+        final IntegerVector many =
+            new IntegerVector(Integer.MAX_VALUE / (bases.length * width) + 1,
+                              1);
+        boolean rejected = false;
+        try {
+            tab.fpowm(many);
+        } catch (final IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Accepted too many powers!";
+
+        // Freed tables are rejected.
+        tab.free();
+        rejected = false;
+        try {
+            tab.fpowm(BigInteger.ONE);
+        } catch (final IllegalStateException ise) {
+            rejected = true;
+        }
+        assert rejected : "Accepted freed tables!";
+    }
+
+    /**
+     * Expands a seed using SHA-256 in counter mode as explained in
+     * {@link FpowmTab#fpowm(byte[], int)}.
+     *
+     * @param seed Seed of the generator.
+     * @param len Number of bytes of output.
+     * @return Output of the generator.
+     */
+    protected static byte[] sha256_prg(final byte[] seed, final int len) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            final byte[] output = new byte[len];
+            int pos = 0;
+            for (int k = 0; pos < len; k++) {
+                md.update(seed);
+                md.update(new byte[] {(byte) (k >>> 24), (byte) (k >>> 16),
+                                      (byte) (k >>> 8), (byte) k});
+                final byte[] block = md.digest();
+                final int n = Math.min(block.length, len - pos);
+                System.arraycopy(block, 0, output, pos, n);
+                pos += n;
+            }
+            return output;
+        } catch (final NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is missing!", nsae);
+        }
+    }
+
+    /**
+     * Tests fixed-basis exponentiation with exponents derived from a
+     * seed.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_fpowm_prg(final int bitLength,
+                                         final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 7;
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger modulus =
+                new BigInteger(bitLength, random).setBit(0);
+            final BigInteger basis = new BigInteger(bitLength, random);
+
+            // Exponent bit lengths that are not multiples of eight
+            // require masking of the leading byte.
+            final int exponentBitlen = bitLength - random.nextInt(8);
+            final int ew = IntegerVector.byteLength(exponentBitlen);
+
+            final FpowmTab tab =
+                new FpowmTab(basis, modulus, 7, exponentBitlen);
+
+            final byte[] seed = new byte[1 + random.nextInt(80)];
+            random.nextBytes(seed);
+
+            final IntegerVector exponents = new IntegerVector(len, ew);
+            final IntegerVector powers = tab.fpowm(seed, len, exponents);
+
+            final byte[] expanded = sha256_prg(seed, len * ew);
+            for (int i = 0; i < len; i++) {
+                expanded[i * ew] &= (byte) (0xff >>> (8 * ew
+                                                      - exponentBitlen));
+            }
+            assert Arrays.equals(exponents.data(), expanded)
+                : "Failed to derive exponents from seed!";
+
+            for (int i = 0; i < len; i++) {
+                assert powers.get(i).equals(basis.modPow(exponents.get(i),
+                                                         modulus))
+                    : "Failed to fixed-basis exponentiate with exponents "
+                    + "from seed!";
+            }
+
+            assert Arrays.equals(tab.fpowm(seed, len).data(), powers.data())
+                : "Exponentiation with exponents from seed is not "
+                + "deterministic!";
+
+            // The size of the output is checked before anything is
+            // allocated.
+            boolean rejected = false;
+            try {
+                tab.fpowm(seed, Integer.MAX_VALUE / 2);
+            } catch (final IllegalArgumentException iae) {
+                rejected = true;
+            }
+            assert rejected : "Failed to reject too many powers!";
+
+            tab.free();
+
+            rejected = false;
+            try {
+                tab.fpowm(seed, len);
+            } catch (final IllegalStateException ise) {
+                rejected = true;
+            }
+            assert rejected : "Failed to reject freed table!";
+        }
+    }
+
+    /**
+     * Tests batch computation of modular square roots.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_sqrtm(final int bitLength,
+                                     final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 10;
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            // Primes congruent to 3 mod 4 use a single
+            // exponentiation, and the Tonelli-Shanks algorithm
+            // requires more iterations for a larger power of two
+            // dividing p - 1.
+            final BigInteger[] primes = new BigInteger[3];
+            for (int j = 0; j < 2; j++) {
+                BigInteger prime;
+                do {
+                    prime = BigInteger.probablePrime(bitLength, random);
+                } while (prime.testBit(1) != (j == 0));
+                primes[j] = prime;
+            }
+            final int s = 20;
+            BigInteger prime;
+            do {
+                prime = new BigInteger(bitLength - s, random)
+                    .shiftLeft(s).setBit(s).add(BigInteger.ONE);
+            } while (!prime.isProbablePrime(40));
+            primes[2] = prime;
+
+            for (final BigInteger p : primes) {
+
+                final BigInteger[] values = new BigInteger[len];
+                for (int l = 0; l < len; l++) {
+                    values[l] = new BigInteger(bitLength, random);
+                }
+                values[0] = BigInteger.ZERO;
+                values[1] = p.multiply(values[1]);
+                values[2] = values[2].multiply(values[2]).mod(p);
+                values[3] = values[3].negate();
+
+                final int[] symbols = new int[len];
+                final BigInteger[] roots = VMG.sqrtm(values, p, symbols);
+
+                // Only non-negative integers can be packed.
+                final BigInteger[] vvalues = values.clone();
+                vvalues[3] = vvalues[3].mod(p);
+                final int[] vsymbols = new int[len];
+                final IntegerVector vroots =
+                    VMG.sqrtm(new IntegerVector(vvalues), p, vsymbols);
+
+                final BigInteger half = p.shiftRight(1);
+                for (int l = 0; l < len; l++) {
+                    final int symbol = VMG.legendre(values[l], p);
+                    assert symbols[l] == symbol && vsymbols[l] == symbol
+                        : "Wrong Legendre symbol of square root!";
+                    assert roots[l].equals(vroots.get(l))
+                        : "Square roots of array and vector differ!";
+                    if (symbol == -1) {
+                        assert roots[l].signum() == 0
+                            : "Non-zero root of non-residue!";
+                    } else {
+                        assert roots[l].compareTo(half) <= 0
+                            && roots[l].multiply(roots[l]).mod(p)
+                            .equals(values[l].mod(p))
+                            : "Failed to compute square root!";
+                    }
+                }
+            }
+        }
+
+        // Moduli that are not odd primes are rejected, since the
+        // algorithm may not terminate for them.
+        final IntegerVector small =
+            new IntegerVector(new BigInteger[] {BigInteger.valueOf(4)});
+        final int[] smallSymbols = new int[1];
+        for (final int modulus : new int[] {-7, 0, 1, 2, 8, 9, 15, 25}) {
+            boolean rejected = false;
+            try {
+                VMG.sqrtm(small, BigInteger.valueOf(modulus), smallSymbols);
+            } catch (final IllegalArgumentException iae) {
+                rejected = true;
+            }
+            assert rejected : "Failed to reject modulus " + modulus + "!";
+        }
+
+        // The native code also detects some moduli that are not
+        // primes, e.g., squares, for which there are no non-residues.
+        for (final int modulus : new int[] {2, 8, 9, 25}) {
+            boolean rejected = false;
+            try {
+                VMG.sqrtm_vec(small.data, small.width,
+                              BigInteger.valueOf(modulus).toByteArray(),
+                              1, smallSymbols);
+            } catch (final IllegalArgumentException iae) {
+                rejected = true;
+            }
+            assert rejected : "Failed to reject modulus " + modulus
+                + " natively!";
+        }
+    }
+
+    /**
+     * Tests dispatching between BigInteger and native code.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_adaptive(final int bitLength,
+                                        final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 5;
+
+        // Route everything to one implementation.
+        final AdaptiveVMG[] dispatchers = {
+            new AdaptiveVMG(0, 0, 0),
+            new AdaptiveVMG(Integer.MAX_VALUE, Integer.MAX_VALUE,
+                            Integer.MAX_VALUE)
+        };
+
+        // Route exponentiations by the bit length of the exponent.
+        final AdaptiveVMG split = new AdaptiveVMG(0, Integer.MAX_VALUE, 0, 0);
+        final BigInteger modulus = BigInteger.probablePrime(bitLength, random);
+        final BigInteger shortExponent =
+            new BigInteger(AdaptiveVMG.SHORT_EXPONENT_BIT_LENGTH, random);
+        final BigInteger longExponent =
+            shortExponent.setBit(AdaptiveVMG.SHORT_EXPONENT_BIT_LENGTH);
+        assert split.powm(modulus.subtract(BigInteger.ONE), shortExponent,
+                          modulus)
+            .equals(modulus.subtract(BigInteger.ONE)
+                    .modPow(shortExponent, modulus))
+            && split.count(VMGMonitor.Operation.POWM, AdaptiveVMG.Route.JAVA)
+            == 1
+            : "Failed to route short exponent!";
+        assert split.powm(BigInteger.TEN, longExponent, modulus)
+            .equals(BigInteger.TEN.modPow(longExponent, modulus))
+            && split.count(VMGMonitor.Operation.POWM,
+                           AdaptiveVMG.Route.NATIVE) == 1
+            : "Failed to route long exponent!";
+        final AdaptiveVMG.Route[] routes = {
+            AdaptiveVMG.Route.NATIVE, AdaptiveVMG.Route.JAVA
+        };
+
+        long calls = 0;
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger prime =
+                BigInteger.probablePrime(bitLength / 2, random);
+            final BigInteger[] bases = new BigInteger[len];
+            final BigInteger[] exponents = new BigInteger[len];
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random);
+                exponents[l] = new BigInteger(bitLength, random);
+            }
+            bases[0] = prime.multiply(bases[0]);
+
+            BigInteger product = BigInteger.ONE;
+            for (int l = 0; l < len; l++) {
+                product = product.multiply(bases[l].modPow(exponents[l],
+                                                           prime))
+                    .mod(prime);
+            }
+
+            for (final AdaptiveVMG dispatcher : dispatchers) {
+                for (int l = 0; l < len; l++) {
+                    assert dispatcher.powm(bases[l], exponents[l], prime)
+                        .equals(bases[l].modPow(exponents[l], prime))
+                        : "Failed to dispatch exponentiation!";
+                    assert dispatcher.legendre(bases[l], prime)
+                        == VMG.legendre(bases[l], prime)
+                        : "Failed to dispatch Legendre symbol!";
+                }
+                assert dispatcher.spowm(bases, exponents, prime)
+                    .equals(product)
+                    : "Failed to dispatch simultaneous exponentiation!";
+            }
+            calls++;
+        }
+
+        for (int i = 0; i < dispatchers.length; i++) {
+            assert dispatchers[i].count(VMGMonitor.Operation.POWM,
+                                        routes[i]) == len * calls
+                && dispatchers[i].count(VMGMonitor.Operation.SPOWM,
+                                        routes[i]) == calls
+                && dispatchers[i].count(VMGMonitor.Operation.LEGENDRE,
+                                        routes[i]) == len * calls
+                : "Wrong routing statistics!";
+            dispatchers[i].resetStatistics();
+            assert dispatchers[i].count(VMGMonitor.Operation.POWM,
+                                        routes[i]) == 0
+                : "Failed to reset routing statistics!";
+        }
+
+        // Calibration followed by a round trip through a profile.
+        final AdaptiveVMG calibrated = AdaptiveVMG.calibrate(1);
+        try {
+            final Path path = Files.createTempFile("vmgj", ".profile");
+            try {
+                calibrated.store(path);
+                final AdaptiveVMG loaded = AdaptiveVMG.load(path);
+                assert loaded.powmCrossover() == calibrated.powmCrossover()
+                    && loaded.powmShortCrossover()
+                    == calibrated.powmShortCrossover()
+                    && loaded.spowmCrossover()
+                    == calibrated.spowmCrossover()
+                    && loaded.legendreCrossover()
+                    == calibrated.legendreCrossover()
+                    : "Failed to store and load profile!";
+            } finally {
+                Files.delete(path);
+            }
+        } catch (final IOException ioe) {
+            throw new IllegalStateException("Unable to process profile!",
+                                            ioe);
+        }
+    }
+
+    /**
+     * Tests exponentiation using the Chinese remainder theorem.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_crt(final int bitLength,
+                                   final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 5;
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            final BigInteger p = BigInteger.probablePrime(bitLength / 2,
+                                                          random);
+            final BigInteger q = BigInteger.probablePrime(bitLength / 2,
+                                                          random);
+            if (p.equals(q)) {
+                continue;
+            }
+
+            // RSA-style and Paillier-style moduli.
+            final CrtContext[] contexts = {
+                new CrtContext(p, q),
+                new CrtContext(new BigInteger[] {p, q}, new int[] {2, 2})
+            };
+
+            for (final CrtContext crt : contexts) {
+
+                final BigInteger modulus = crt.modulus();
+
+                // Include bases that are not invertible modulo a
+                // factor.
+                final BigInteger[] bases = new BigInteger[len];
+                final BigInteger[] exponents = new BigInteger[len];
+                for (int l = 0; l < len; l++) {
+                    bases[l] = new BigInteger(2 * bitLength, random);
+                    exponents[l] = new BigInteger(2 * bitLength, random);
+                }
+                bases[0] = BigInteger.ZERO;
+                bases[1] = p.multiply(new BigInteger(bitLength, random));
+                exponents[2] = BigInteger.ZERO;
+
+                final IntegerVector vbases = new IntegerVector(bases);
+                final BigInteger[] vpowers =
+                    crt.powm(vbases, new IntegerVector(exponents))
+                    .toBigIntegers();
+                final BigInteger[] cpowers =
+                    crt.powm(vbases, exponents[3]).toBigIntegers();
+
+                for (int l = 0; l < len; l++) {
+                    final BigInteger res = bases[l].modPow(exponents[l],
+                                                           modulus);
+                    assert crt.powm(bases[l], exponents[l]).equals(res)
+                        && vpowers[l].equals(res)
+                        : "Failed to exponentiate using CRT!";
+                    assert cpowers[l].equals(bases[l].modPow(exponents[3],
+                                                             modulus))
+                        : "Failed to exponentiate using CRT with common "
+                        + "exponent!";
+                }
+
+                for (int l = 0; l < 2; l++) {
+                    final CrtFpowmTab tab =
+                        new CrtFpowmTab(crt, bases[l + 1], 6, 2);
+                    final BigInteger[] fpowers =
+                        tab.fpowm(new IntegerVector(exponents))
+                        .toBigIntegers();
+                    for (int k = 0; k < len; k++) {
+                        final BigInteger res =
+                            bases[l + 1].modPow(exponents[k], modulus);
+                        assert tab.fpowm(exponents[k]).equals(res)
+                            && fpowers[k].equals(res)
+                            : "Failed to fixed-basis exponentiate using CRT!";
+                    }
+                    tab.free();
+                }
+
+                // The context is not freed while a table is live, and a
+                // freed table is rejected.
+                final CrtFpowmTab live = new CrtFpowmTab(crt, bases[0], 2, 1);
+                boolean rejected = false;
+                try {
+                    crt.free();
+                } catch (final IllegalStateException ise) {
+                    rejected = true;
+                }
+                assert rejected : "Freed context with live table!";
+                live.free();
+                rejected = false;
+                try {
+                    live.fpowm(exponents[0]);
+                } catch (final IllegalStateException ise) {
+                    rejected = true;
+                }
+                assert rejected : "Accepted freed table!";
+
+                crt.free();
+            }
+        }
+
+        boolean rejected = false;
+        try {
+            final BigInteger p = BigInteger.probablePrime(bitLength / 2,
+                                                          random);
+            new CrtContext(p, p);
+        } catch (final IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Failed to reject non-coprime factors!";
+
+        rejected = false;
+        try {
+            new CrtContext(new BigInteger[] {BigInteger.valueOf(15),
+                                             BigInteger.valueOf(7)},
+                           new int[] {1, 1});
+        } catch (final IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Failed to reject composite factor!";
+    }
+
+    /**
+     * Tests exponentiation in a subgroup of known order.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
      */
-    private static boolean done(final long t, final long milliSecs) {
-        return System.currentTimeMillis() > t + milliSecs;
+    protected static void test_group(final int bitLength,
+                                     final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        final int len = 5;
+
+        // Schnorr group, i.e., a subgroup of prime order q modulo a
+        // prime p = kq + 1.
+        final BigInteger q =
+            BigInteger.probablePrime(Math.min(256, bitLength / 2), random);
+        BigInteger k;
+        BigInteger p;
+        do {
+            k = new BigInteger(bitLength - q.bitLength(), random)
+                .shiftLeft(1);
+            p = k.multiply(q).add(BigInteger.ONE);
+        } while (!p.isProbablePrime(50));
+
+        final GroupContext group = new GroupContext(p, q);
+        assert group.modulus().equals(p) && group.order().equals(q)
+            : "Failed to store parameters of group!";
+
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+
+            // Elements of the subgroup and exponents that are longer
+            // than the order, zero, or negative.
+            final BigInteger[] bases = new BigInteger[len];
+            final BigInteger[] exponents = new BigInteger[len];
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random).mod(p)
+                    .modPow(k, p);
+                exponents[l] = new BigInteger(2 * bitLength, random);
+            }
+            exponents[1] = BigInteger.ZERO;
+            exponents[2] = q;
+            exponents[3] = exponents[3].negate();
+
+            // Packed exponents must be non-negative, so the negative
+            // exponent is replaced by a congruent exponent that is
+            // longer than the order. Thus, the packed exponents are
+            // also reduced natively.
+            final BigInteger[] unsigned = exponents.clone();
+            unsigned[3] = exponents[3].mod(q).add(q.shiftLeft(bitLength));
+            final IntegerVector vexponents = new IntegerVector(unsigned);
+
+            final IntegerVector vbases = new IntegerVector(bases);
+            final BigInteger[] vpowers =
+                group.powm(vbases, vexponents).toBigIntegers();
+            final BigInteger[] cpowers =
+                group.powm(vbases, exponents[3]).toBigIntegers();
+
+            for (int l = 0; l < len; l++) {
+                final BigInteger res = bases[l].modPow(exponents[l], p);
+                assert group.powm(bases[l], exponents[l]).equals(res)
+                    && vpowers[l].equals(res)
+                    : "Failed to exponentiate in group!";
+                assert cpowers[l].equals(bases[l].modPow(exponents[3], p))
+                    : "Failed to exponentiate in group with common "
+                    + "exponent!";
+            }
+
+            BigInteger sres = BigInteger.ONE;
+            for (int l = 0; l < len; l++) {
+                sres = sres.multiply(bases[l].modPow(exponents[l], p)).mod(p);
+            }
+            assert group.spowm(bases, exponents).equals(sres)
+                : "Failed to simultaneously exponentiate in group!";
+
+            final FpowmTab tab = group.fpowmTab(bases[0], 6, 2);
+            final BigInteger[] fpowers =
+                group.fpowm(tab, vexponents).toBigIntegers();
+            for (int l = 0; l < len; l++) {
+                final BigInteger res = bases[0].modPow(exponents[l], p);
+                assert group.fpowm(tab, exponents[l]).equals(res)
+                    && fpowers[l].equals(res)
+                    : "Failed to fixed-basis exponentiate in group!";
+            }
+            tab.free();
+        }
+
+        // Freed tables and tables for other moduli are rejected.
+        final FpowmTab freed = group.fpowmTab(BigInteger.ONE, 2, 1);
+        freed.free();
+        final FpowmTab foreign =
+            new FpowmTab(BigInteger.ONE, p.multiply(q), 2, 8, 1,
+                         false);
+        for (final FpowmTab tab : new FpowmTab[] {freed, foreign}) {
+            boolean rejected = false;
+            try {
+                group.fpowm(tab, BigInteger.ONE);
+            } catch (final IllegalArgumentException
+                     | IllegalStateException e) {
+                rejected = true;
+            }
+            assert rejected : "Failed to reject table!";
+        }
+        foreign.free();
+        group.free();
+
+        boolean rejected = false;
+        try {
+            new GroupContext(p, BigInteger.ZERO);
+        } catch (final IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Failed to reject non-positive order!";
     }
 
     /**
-     * Tests exponentiation.
+     * Tests computation of Legendre symbols.
      *
-     * @param bitLength Number of bits of integers.
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
      * @param milliSecs Duration of the timing.
      */
-    protected static void test_powm(final int bitLength, final long milliSecs) {
+    protected static void test_legendre(final int bitLength,
+                                        final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
 
+        final BigInteger two = BigInteger.ONE.add(BigInteger.ONE);
+
         // Test optimized code.
         final long t = System.currentTimeMillis();
         while (!done(t, milliSecs)) {
 
-            final BigInteger modulus = new BigInteger(bitLength, random);
-            final BigInteger basis = new BigInteger(bitLength, random);
-            final BigInteger exponent = new BigInteger(bitLength, random);
+            // Make sure we have an odd prime modulus.
+            final BigInteger prime =
+                BigInteger.probablePrime(bitLength, random);
+            final BigInteger exponent =
+                prime.subtract(BigInteger.ONE).divide(two);
 
-            final BigInteger vmg = VMG.powm(basis, exponent, modulus);
-            final BigInteger java = basis.modPow(exponent, modulus);
+            final BigInteger bi = new BigInteger(bitLength, random);
 
-            assert vmg.equals(java) : "Fixed basis exponentiation failed!";
+            final int ivmg = VMG.legendre(bi, prime);
+            final BigInteger vmg =
+                new BigInteger(Integer.toString(ivmg)).mod(prime);
+            final BigInteger res = bi.modPow(exponent, prime);
+
+            assert vmg.equals(res) : "Failed to compute Legendre symbol!";
         }
     }
 
     /**
-     * Test simultaneous exponentiation.
+     * Tests the routines for packed vectors.
      *
-     * @param bitLength Number of bits of integers.
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
      * @param milliSecs Duration of the timing.
      */
-    protected static void test_spowm(final int bitLength,
-                                     final long milliSecs) {
+    protected static void test_vec(final int bitLength,
+                                   final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
 
-        final int len = 50;
+        final int len = 20;
 
-        // Generate random modulus.
         final BigInteger modulus = new BigInteger(bitLength, random);
+        final BigInteger prime = BigInteger.probablePrime(bitLength, random);
+        final BigInteger basis = new BigInteger(bitLength, random);
+        final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
 
         final BigInteger[] bases = new BigInteger[len];
         final BigInteger[] exponents = new BigInteger[len];
 
         final long t = System.currentTimeMillis();
         while (!done(t, milliSecs)) {
+
             for (int l = 0; l < len; l++) {
                 bases[l] = new BigInteger(bitLength, random).mod(modulus);
                 exponents[l] = new BigInteger(bitLength, random);
             }
 
-            final BigInteger vmg = VMG.spowm(bases, exponents, modulus);
+            // Make sure that zero and short integers are handled.
+            bases[0] = BigInteger.ZERO;
+            exponents[1] = BigInteger.ONE;
+
+            final IntegerVector vbases = new IntegerVector(bases);
+            final IntegerVector vexponents = new IntegerVector(exponents);
+
+            final BigInteger[] powers =
+                VMG.powm(vbases, vexponents, modulus).toBigIntegers();
+            final BigInteger[] fixed =
+                VMG.powm(vbases, exponents[2], modulus).toBigIntegers();
+            final BigInteger[] fpowers = tab.fpowm(vexponents).toBigIntegers();
+            final int[] symbols = VMG.legendre(vbases, prime);
 
             BigInteger res = BigInteger.ONE;
             for (int l = 0; l < len; l++) {
-                res = res.multiply(bases[l].modPow(exponents[l], modulus));
-                res = res.mod(modulus);
+
+                final BigInteger power = bases[l].modPow(exponents[l], modulus);
+                assert powers[l].equals(power) : "Failed to exponentiate!";
+
+                assert fixed[l].equals(bases[l].modPow(exponents[2], modulus))
+                    : "Failed to exponentiate with common exponent!";
+
+                assert fpowers[l].equals(basis.modPow(exponents[l], modulus))
+                    : "Failed to fixed-basis exponentiate!";
+
+                assert symbols[l] == VMG.legendre(bases[l], prime)
+                    : "Failed to compute Legendre symbol!";
+
+                res = res.multiply(power).mod(modulus);
             }
 
+            final BigInteger vmg = VMG.spowm(vbases, vexponents, modulus);
+
             assert vmg.equals(res) : "Failed to simultanously exponentiate!";
         }
+        tab.free();
+
+        // A packed result that does not fit in a byte array.
+        final IntegerVector small = new IntegerVector(new BigInteger[] {
+                BigInteger.ONE, BigInteger.ONE
+            });
+        boolean rejected = false;
+        try {
+            VMG.powm_vec(small.data, small.width, small.data, small.width,
+                         modulus.toByteArray(), Integer.MAX_VALUE);
+        } catch (IllegalArgumentException iae) {
+            rejected = true;
+        }
+        assert rejected : "Accepted too large packed result!";
     }
 
     /**
-     * Tests fixed-basis exponentiation.
+     * Tests the asynchronous facade.
      *
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
      */
-    protected static void test_fpowm(final int bitLength,
+    protected static void test_async(final int bitLength,
                                      final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
 
-        // Generate random modulus.
+        final int len = 10;
+
         final BigInteger modulus = new BigInteger(bitLength, random);
+        final BigInteger prime = BigInteger.probablePrime(bitLength, random);
         final BigInteger basis = new BigInteger(bitLength, random);
         final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
 
-        // Test optimized code.
-        final long t = System.currentTimeMillis();
-        while (!done(t, milliSecs)) {
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
 
-            final BigInteger exponent = new BigInteger(bitLength, random);
-            final BigInteger vmg = tab.fpowm(exponent);
-            final BigInteger res = basis.modPow(exponent, modulus);
+        // Use few permits to exercise backpressure.
+        try (AsyncVMG async = new AsyncVMG(3, 2)) {
 
-            assert vmg.equals(res) : "Failed to fixed-basis exponentiate!";
+            final long t = System.currentTimeMillis();
+            while (!done(t, milliSecs)) {
+
+                for (int l = 0; l < len; l++) {
+                    bases[l] = new BigInteger(bitLength, random).mod(modulus);
+                    exponents[l] = new BigInteger(bitLength, random);
+                }
+
+                final CompletableFuture<BigInteger> powm =
+                    async.powm(bases[0], exponents[0], modulus);
+                final CompletableFuture<BigInteger> spowm =
+                    async.spowm(bases, exponents, modulus);
+                final CompletableFuture<BigInteger> fpowm =
+                    async.fpowm(tab, exponents[1]);
+                final CompletableFuture<Integer> legendre =
+                    async.legendre(bases[2], prime);
+                final CompletableFuture<BigInteger[]> powms =
+                    async.powm(bases, exponents, modulus);
+                final CompletableFuture<BigInteger[]> fpowms =
+                    async.fpowm(tab, exponents);
+
+                assert powm.join().equals(bases[0].modPow(exponents[0],
+                                                          modulus))
+                    : "Failed to exponentiate asynchronously!";
+                assert spowm.join().equals(VMG.spowm(bases, exponents,
+                                                     modulus))
+                    : "Failed to simultaneously exponentiate asynchronously!";
+                assert fpowm.join().equals(basis.modPow(exponents[1], modulus))
+                    : "Failed to fixed-basis exponentiate asynchronously!";
+                assert legendre.join() == VMG.legendre(bases[2], prime)
+                    : "Failed to compute Legendre symbol asynchronously!";
+
+                final BigInteger[] p = powms.join();
+                final BigInteger[] f = fpowms.join();
+                for (int l = 0; l < len; l++) {
+                    assert p[l].equals(bases[l].modPow(exponents[l], modulus))
+                        : "Failed to exponentiate batch asynchronously!";
+                    assert f[l].equals(basis.modPow(exponents[l], modulus))
+                        : "Failed to fixed-basis exponentiate batch "
+                        + "asynchronously!";
+                }
+            }
         }
+        tab.free();
     }
 
     /**
-     * Tests computation of Legendre symbols.
+     * Tests bulk operations from file to file.
      *
      * @param bitLength Number of bits of integers in the operation
      * timed.
      * @param milliSecs Duration of the timing.
      */
-    protected static void test_legendre(final int bitLength,
-                                        final long milliSecs) {
+    protected static void test_bulk(final int bitLength,
+                                    final long milliSecs) {
 
         final SecureRandom random = new SecureRandom();
 
-        final BigInteger two = BigInteger.ONE.add(BigInteger.ONE);
+        final int len = 50;
 
-        // Test optimized code.
-        final long t = System.currentTimeMillis();
-        while (!done(t, milliSecs)) {
+        final BigInteger modulus = new BigInteger(bitLength, random);
+        final BigInteger basis = new BigInteger(bitLength, random);
+        final BigInteger factor = new BigInteger(bitLength, random);
+        final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
 
-            // Make sure we have an odd prime modulus.
-            final BigInteger prime =
-                BigInteger.probablePrime(bitLength, random);
-            final BigInteger exponent =
-                prime.subtract(BigInteger.ONE).divide(two);
+        final BigInteger[] bases = new BigInteger[len];
+        final BigInteger[] exponents = new BigInteger[len];
 
-            final BigInteger bi = new BigInteger(bitLength, random);
+        // Use a chunk size that does not divide the number of integers.
+        try (AsyncVMG async = new AsyncVMG(2)) {
+            final BulkVMG bulk = new BulkVMG(async, 7);
 
-            final int ivmg = VMG.legendre(bi, prime);
-            final BigInteger vmg =
-                new BigInteger(Integer.toString(ivmg)).mod(prime);
-            final BigInteger res = bi.modPow(exponent, prime);
+            final Path basesPath = Files.createTempFile("vmgj", ".bases");
+            final Path exponentsPath = Files.createTempFile("vmgj", ".exps");
+            final Path outputPath = Files.createTempFile("vmgj", ".out");
+            try {
+                final long t = System.currentTimeMillis();
+                while (!done(t, milliSecs)) {
 
-            assert vmg.equals(res) : "Failed to compute Legendre symbol!";
+                    for (int l = 0; l < len; l++) {
+                        bases[l] = new BigInteger(bitLength, random);
+                        exponents[l] = new BigInteger(bitLength, random);
+                    }
+                    final IntegerVector basesVector =
+                        new IntegerVector(bases);
+                    final IntegerVector exponentsVector =
+                        new IntegerVector(exponents);
+                    Files.write(basesPath, basesVector.data());
+                    Files.write(exponentsPath, exponentsVector.data());
+
+                    final int width =
+                        IntegerVector.byteLength(modulus.bitLength());
+
+                    bulk.powm(basesPath, basesVector.width(),
+                              exponentsPath, exponentsVector.width(),
+                              modulus, outputPath);
+                    final BigInteger[] p =
+                        new IntegerVector(Files.readAllBytes(outputPath),
+                                          width).toBigIntegers();
+
+                    bulk.fpowm(tab, exponentsPath, exponentsVector.width(),
+                               outputPath);
+                    final BigInteger[] f =
+                        new IntegerVector(Files.readAllBytes(outputPath),
+                                          width).toBigIntegers();
+
+                    bulk.multiply(basesPath, basesVector.width(), factor,
+                                  modulus, outputPath);
+                    final BigInteger[] m =
+                        new IntegerVector(Files.readAllBytes(outputPath),
+                                          width).toBigIntegers();
+
+                    assert p.length == len && f.length == len
+                        && m.length == len
+                        : "Failed to write all results!";
+                    for (int l = 0; l < len; l++) {
+                        assert p[l].equals(bases[l].modPow(exponents[l],
+                                                           modulus))
+                            : "Failed to exponentiate file!";
+                        assert f[l].equals(basis.modPow(exponents[l],
+                                                        modulus))
+                            : "Failed to fixed-basis exponentiate file!";
+                        assert m[l].equals(bases[l].multiply(factor)
+                                           .mod(modulus))
+                            : "Failed to multiply file!";
+                    }
+                }
+
+                // A freed table is rejected.
+                final FpowmTab freed = new FpowmTab(basis, modulus, bitLength);
+                freed.free();
+                boolean rejected = false;
+                try {
+                    bulk.fpowm(freed, exponentsPath, 1, outputPath);
+                } catch (final IllegalStateException ise) {
+                    rejected = true;
+                }
+                assert rejected : "Accepted freed table!";
+
+                // Invoking a bulk operation from a worker thread of its
+                // own executor is rejected instead of deadlocking.
+                rejected = false;
+                try {
+                    async.submit(() -> bulk.multiply(basesPath, 1, factor,
+                                                     modulus, outputPath))
+                        .join();
+                } catch (final CompletionException ce) {
+                    rejected = ce.getCause() instanceof IllegalStateException;
+                }
+                assert rejected : "Accepted invocation from worker thread!";
+            } finally {
+                Files.delete(outputPath);
+                Files.delete(exponentsPath);
+                Files.delete(basesPath);
+            }
+        } catch (final IOException ioe) {
+            throw new IllegalStateException("Unable to process files!", ioe);
+        }
+        tab.free();
+    }
+
+    /**
+     * Tests latency histograms and flight recorder events.
+     *
+     * @param bitLength Number of bits of integers in the operation
+     * timed.
+     * @param milliSecs Duration of the timing.
+     */
+    protected static void test_monitor(final int bitLength,
+                                       final long milliSecs) {
+
+        final SecureRandom random = new SecureRandom();
+
+        // Reported percentiles are upper bounds with bounded error.
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        final long p50 = histogram.percentile(50);
+        assert histogram.count() == 1000 && histogram.max() == 1000000
+            && p50 >= 500000
+            && p50 <= 500000 + 500000 / LatencyHistogram.SUB_BUCKETS
+            : "Failed to compute percentile!";
+
+        final BigInteger modulus = new BigInteger(bitLength, random);
+        final BigInteger basis = new BigInteger(bitLength, random);
+        final BigInteger exponent = new BigInteger(bitLength, random);
+
+        VMGMonitor.resetHistograms();
+        VMGMonitor.enableHistograms(true);
+
+        int count = 0;
+        final long t = System.currentTimeMillis();
+        while (!done(t, milliSecs)) {
+            VMG.powm(basis, exponent, modulus);
+            count++;
+        }
+        final FpowmTab tab = new FpowmTab(basis, modulus, bitLength);
+        tab.fpowm(exponent);
+        tab.free();
+
+        VMGMonitor.enableHistograms(false);
+        VMG.powm(basis, exponent, modulus);
+
+        assert VMGMonitor.histogram(VMGMonitor.Operation.POWM).count()
+            == count
+            && VMGMonitor.histogram(VMGMonitor.Operation.PRECOMP).count() == 1
+            && VMGMonitor.histogram(VMGMonitor.Operation.FPOWM).count() == 1
+            : "Failed to record latencies!";
+
+        // Events are only committed while a recording is running.
+        int events = 0;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.verificatum.vmgj.NativeCall");
+            recording.start();
+            VMG.powm(basis, exponent, modulus);
+            recording.stop();
+
+            final Path path = Files.createTempFile("vmgj", ".jfr");
+            try {
+                recording.dump(path);
+                for (final RecordedEvent event
+                         : RecordingFile.readAllEvents(path)) {
+                    if ("POWM".equals(event.getString("operation"))) {
+                        assert event.getInt("modulusBitLength")
+                            == modulus.bitLength()
+                            : "Failed to record modulus bit length!";
+                        assert !event.getDuration().isZero()
+                            && !event.getDuration().isNegative()
+                            : "Failed to record duration of operation!";
+                        events++;
+                    }
+                }
+            } finally {
+                Files.delete(path);
+            }
+        } catch (final IOException ioe) {
+            throw new IllegalStateException("Unable to read recording!", ioe);
         }
+        assert events == 1 : "Failed to commit flight recorder event!";
     }
 
     /**
@@ -356,6 +1669,485 @@ public final class TestVMG {
         }
     }
 
+    /**
+     * Returns the resident set size of this process as reported by
+     * the operating system, which includes native memory.
+     *
+     * @return Resident set size in bytes, or -1 if it is not
+     * available, i.e., on systems without the proc file system.
+     */
+    static long residentSetSize() {
+        try {
+            final Path status = Paths.get("/proc/self/status");
+            for (final String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    final String kB = line.replaceAll("[^0-9]", "");
+                    return 1024 * Long.parseLong(kB);
+                }
+            }
+        } catch (final IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Handles shared by all threads of the stress test.
+     */
+    static final class SharedHandles {
+
+        /**
+         * Modulus of all operations except CRT and square roots.
+         */
+        final BigInteger modulus;
+
+        /**
+         * Prime used for square roots and as a factor of the CRT
+         * modulus.
+         */
+        final BigInteger p;
+
+        /**
+         * Modulus of the CRT context.
+         */
+        final BigInteger crtModulus;
+
+        /**
+         * Basis of the fixed-basis table.
+         */
+        final BigInteger basis;
+
+        /**
+         * Bases of the fixed-basis tables of several bases.
+         */
+        final BigInteger[] bases;
+
+        /**
+         * Fixed-basis table.
+         */
+        final FpowmTab tab;
+
+        /**
+         * Fixed-basis tables of several bases.
+         */
+        final MultiFpowmTab multiTab;
+
+        /**
+         * CRT context.
+         */
+        final CrtContext crt;
+
+        /**
+         * Asynchronous facade.
+         */
+        final AsyncVMG async;
+
+        /**
+         * Creates the shared handles.
+         *
+         * @param bitLength Bit length of moduli.
+         * @param random Source of randomness.
+         */
+        SharedHandles(final int bitLength, final SecureRandom random) {
+            modulus = new BigInteger(bitLength, random).setBit(0);
+            p = BigInteger.probablePrime(bitLength / 2, random);
+            BigInteger q;
+            do {
+                q = BigInteger.probablePrime(bitLength / 2, random);
+            } while (q.equals(p));
+            crtModulus = p.multiply(q);
+            basis = new BigInteger(bitLength, random);
+            bases = new BigInteger[] {
+                new BigInteger(bitLength, random),
+                new BigInteger(bitLength, random)
+            };
+            tab = new FpowmTab(basis, modulus, 8, bitLength);
+            multiTab = new MultiFpowmTab(bases, modulus, 8, bitLength, 1);
+            crt = new CrtContext(p, q);
+            async = new AsyncVMG(2);
+        }
+
+        /**
+         * Releases the native resources of the handles.
+         */
+        void free() {
+            async.close();
+            crt.free();
+            multiTab.free();
+            tab.free();
+        }
+    }
+
+    /**
+     * Executes one of the operations of the stress test and verifies
+     * the result against BigInteger.
+     *
+     * @param op Index of the operation in {@link #STRESS_OPERATIONS}.
+     * @param shared Shared handles.
+     * @param states Miller-Rabin states of the calling thread.
+     * @param bitLength Bit length of moduli.
+     * @param random Source of randomness.
+     */
+    private static void stress_once(final int op,
+                                    final SharedHandles shared,
+                                    final MillerRabin[] states,
+                                    final int bitLength,
+                                    final SecureRandom random) {
+        final int len = 4;
+        final BigInteger modulus = shared.modulus;
+        final BigInteger exponent = new BigInteger(bitLength, random);
+        final BigInteger value = new BigInteger(bitLength, random);
+
+        switch (op) {
+        case 0:
+            assert VMG.powm(value, exponent, modulus)
+                .equals(value.modPow(exponent, modulus))
+                : "Stress: failed to exponentiate!";
+            break;
+
+        case 1:
+        case 6:
+            final BigInteger[] bases = new BigInteger[len];
+            final BigInteger[] exponents = new BigInteger[len];
+            BigInteger product = BigInteger.ONE;
+            for (int l = 0; l < len; l++) {
+                bases[l] = new BigInteger(bitLength, random);
+                exponents[l] = new BigInteger(bitLength, random);
+                product = product.multiply(bases[l].modPow(exponents[l],
+                                                           modulus))
+                    .mod(modulus);
+            }
+            if (op == 1) {
+                assert VMG.spowm(bases, exponents, modulus).equals(product)
+                    : "Stress: failed to simultaneously exponentiate!";
+            } else {
+                final SpowmAccumulator acc = new SpowmAccumulator(modulus);
+                for (int l = 0; l < len; l++) {
+                    acc.add(bases[l], exponents[l]);
+                }
+                assert acc.result().equals(product)
+                    : "Stress: failed to accumulate!";
+                acc.free();
+            }
+            break;
+
+        case 2:
+            assert shared.tab.fpowm(exponent)
+                .equals(shared.basis.modPow(exponent, modulus))
+                : "Stress: failed to use shared fixed-basis table!";
+            break;
+
+        case 3:
+            final FpowmTab tab = new FpowmTab(value, modulus, 4, bitLength);
+            assert tab.fpowm(exponent).equals(value.modPow(exponent,
+                                                           modulus))
+                : "Stress: failed to use unshared fixed-basis table!";
+            tab.free();
+            break;
+
+        case 4:
+            final BigInteger[] powers = shared.multiTab.fpowm(exponent);
+            for (int j = 0; j < powers.length; j++) {
+                assert powers[j].equals(shared.bases[j].modPow(exponent,
+                                                               modulus))
+                    : "Stress: failed to use shared tables of several "
+                    + "bases!";
+            }
+            break;
+
+        case 5:
+            assert shared.crt.powm(value, exponent)
+                .equals(value.modPow(exponent, shared.crtModulus))
+                : "Stress: failed to exponentiate using shared CRT "
+                + "context!";
+            break;
+
+        case 7:
+            final BigInteger square = value.multiply(value).mod(shared.p);
+            final int[] symbols = new int[1];
+            final BigInteger root =
+                VMG.sqrtm(new BigInteger[] {square}, shared.p, symbols)[0];
+            assert root.multiply(root).mod(shared.p).equals(square)
+                : "Stress: failed to compute square root!";
+            break;
+
+        case 8:
+            assert shared.async.powm(value, exponent, modulus).join()
+                .equals(value.modPow(exponent, modulus))
+                : "Stress: failed to exponentiate asynchronously!";
+            break;
+
+        case 9:
+            final BigInteger[] vbases = new BigInteger[len];
+            final BigInteger[] vexponents = new BigInteger[len];
+            for (int l = 0; l < len; l++) {
+                vbases[l] = new BigInteger(bitLength, random);
+                vexponents[l] = new BigInteger(bitLength, random);
+            }
+            final IntegerVector vb = new IntegerVector(vbases);
+            final IntegerVector ve = new IntegerVector(vexponents);
+            final BigInteger[] vpowers =
+                VMG.powm(vb, ve, modulus).toBigIntegers();
+            final BigInteger[] fpowers =
+                shared.tab.fpowm(ve).toBigIntegers();
+            final int[] vsymbols = VMG.legendre(vb, shared.p);
+            for (int l = 0; l < len; l++) {
+                assert vpowers[l].equals(vbases[l].modPow(vexponents[l],
+                                                          modulus))
+                    && fpowers[l].equals(shared.basis.modPow(vexponents[l],
+                                                             modulus))
+                    && vsymbols[l] == VMG.legendre(vbases[l], shared.p)
+                    : "Stress: failed to compute with packed vectors!";
+            }
+            break;
+
+        case 10:
+            final byte[] seed = new byte[16];
+            random.nextBytes(seed);
+            final IntegerVector sexponents =
+                new IntegerVector(len, IntegerVector.byteLength(bitLength));
+            final IntegerVector spowers =
+                shared.tab.fpowm(seed, len, sexponents);
+            for (int l = 0; l < len; l++) {
+                assert spowers.get(l)
+                    .equals(shared.basis.modPow(sexponents.get(l), modulus))
+                    : "Stress: failed to exponentiate with exponents from "
+                    + "seed!";
+            }
+            break;
+
+        case 11:
+
+            // Exponentiations and checks of readiness race with the
+            // background precomputation, and some tables are freed
+            // before they are ready.
+            final FpowmTab lazy =
+                new FpowmTab(value, modulus, 6, bitLength, 2, true);
+            if (random.nextBoolean()) {
+                lazy.isReady();
+                assert lazy.fpowm(exponent)
+                    .equals(value.modPow(exponent, modulus))
+                    : "Stress: failed to use lazy table!";
+                lazy.awaitReady();
+                assert lazy.isReady()
+                    && lazy.fpowm(exponent)
+                    .equals(value.modPow(exponent, modulus))
+                    : "Stress: failed to use precomputed lazy table!";
+            }
+            lazy.free();
+            break;
+
+        case 12:
+            final BigInteger[] bexponents = new BigInteger[len];
+            for (int l = 0; l < len; l++) {
+                bexponents[l] = new BigInteger(bitLength, random);
+            }
+            final IntegerVector be = new IntegerVector(bexponents);
+            final int width = IntegerVector.byteLength(modulus.bitLength());
+            try {
+                final Path exponentsPath =
+                    Files.createTempFile("vmgj", ".exps");
+                final Path outputPath = Files.createTempFile("vmgj", ".out");
+                try {
+                    Files.write(exponentsPath, be.data());
+                    new BulkVMG(shared.async, 3)
+                        .fpowm(shared.tab, exponentsPath, be.width(),
+                               outputPath);
+                    final IntegerVector bpowers =
+                        new IntegerVector(Files.readAllBytes(outputPath),
+                                          width);
+                    for (int l = 0; l < len; l++) {
+                        assert bpowers.get(l)
+                            .equals(shared.basis.modPow(bexponents[l],
+                                                        modulus))
+                            : "Stress: failed to exponentiate file!";
+                    }
+                } finally {
+                    Files.delete(outputPath);
+                    Files.delete(exponentsPath);
+                }
+            } catch (final IOException ioe) {
+                throw new IllegalStateException("Unable to process files!",
+                                                ioe);
+            }
+            break;
+
+        case 13:
+            final VMGBackend backend = VMG.FFM == null ? VMG.JNI : VMG.FFM;
+            final byte[] nativeValue = value.toByteArray();
+            final byte[] nativeExponent = exponent.toByteArray();
+            final byte[] nativeModulus = modulus.toByteArray();
+            assert new BigInteger(backend.powm(nativeValue, nativeExponent,
+                                               nativeModulus))
+                .equals(value.modPow(exponent, modulus))
+                && new BigInteger(backend.fpowm(shared.tab.tablePtr,
+                                                nativeExponent))
+                .equals(shared.basis.modPow(exponent, modulus))
+                && backend.legendre(nativeValue, shared.p.toByteArray())
+                == VMG.legendre(value, shared.p)
+                : "Stress: failed to use backend!";
+            break;
+
+        default:
+
+            // Interleave rounds of several live states.
+            final int i = random.nextInt(states.length);
+            if (states[i] != null) {
+                states[i].done();
+            }
+            final BigInteger n = value.setBit(0);
+            states[i] = new MillerRabin(n, true, false);
+            boolean vmg = states[i].trial();
+            for (int k = 0; vmg && k < 20; k++) {
+                vmg = states[i].once(getBasis(n, random));
+            }
+            assert vmg == n.isProbablePrime(50)
+                : "Stress: failed to test for primality!";
+            break;
+        }
+    }
+
+    /**
+     * Executes the operations of the stress test from the given
+     * number of threads, verifies all results, checks that the
+     * resident set size does not grow between rounds, and reports
+     * the average latency of each operation and the sustained
+     * throughput.
+     *
+     * @param threads Number of threads.
+     * @param bitLength Number of bits of integers.
+     * @param milliSecs Duration of each round.
+     */
+    public static void test_stress(final int threads,
+                                   final int bitLength,
+                                   final long milliSecs) {
+
+        final String f =
+            "%nStress testing: %d bitlength (%d threads, %d rounds of %d ms)";
+        System.out.println(String.format(f, bitLength, threads,
+                                         STRESS_ROUNDS, milliSecs));
+        System.out.println(
+            "----------------------------------------------------------------");
+
+        final SharedHandles shared =
+            new SharedHandles(bitLength, new SecureRandom());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final MillerRabin[][] states = new MillerRabin[threads][4];
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        final long[] totals = new long[STRESS_OPERATIONS.length];
+        final long[] nanos = new long[STRESS_OPERATIONS.length];
+        long baseline = -1;
+        long rss = -1;
+        try {
+            for (int round = 0; round < STRESS_ROUNDS; round++) {
+
+                final List<Future<long[][]>> futures =
+                    new ArrayList<Future<long[][]>>();
+                for (int j = 0; j < threads; j++) {
+                    final MillerRabin[] threadStates = states[j];
+                    final int first = j;
+                    futures.add(executor.submit(() -> {
+                        final SecureRandom random = new SecureRandom();
+                        final long[][] counts =
+                            new long[2][STRESS_OPERATIONS.length];
+
+                        // Threads start at different operations, so
+                        // all operations are executed concurrently.
+                        int op = first % STRESS_OPERATIONS.length;
+                        final long t = System.currentTimeMillis();
+                        while (!done(t, milliSecs) && !stopped.get()) {
+                            final long start = System.nanoTime();
+                            stress_once(op, shared, threadStates,
+                                        bitLength, random);
+                            counts[0][op]++;
+                            counts[1][op] += System.nanoTime() - start;
+                            op = (op + 1) % STRESS_OPERATIONS.length;
+                        }
+                        return counts;
+                    }));
+                }
+
+                for (final Future<long[][]> future : futures) {
+                    final long[][] counts = future.get();
+                    if (round > 0) {
+                        for (int i = 0; i < totals.length; i++) {
+                            totals[i] += counts[0][i];
+                            nanos[i] += counts[1][i];
+                        }
+                    }
+                }
+
+                System.gc();
+                rss = residentSetSize();
+                if (round == 0) {
+                    baseline = rss;
+                }
+                System.out.println(String.format("round %d: resident set "
+                                                 + "size %d MB", round,
+                                                 rss >> 20));
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted!", ie);
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Stress test failed!", cause);
+        } finally {
+
+            // The native resources are used by the workers, so they
+            // may only be freed when all workers have terminated,
+            // also if another worker failed.
+            stopped.set(true);
+            executor.shutdownNow();
+            boolean interrupted = false;
+            boolean terminated = false;
+            while (!terminated) {
+                try {
+                    terminated =
+                        executor.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            for (final MillerRabin[] threadStates : states) {
+                for (final MillerRabin state : threadStates) {
+                    if (state != null) {
+                        state.done();
+                    }
+                }
+            }
+            shared.free();
+        }
+
+        // The warm-up round is not included. Operations are executed
+        // in turn, so we report the latency of each operation and
+        // the throughput of all operations.
+        final double seconds = (STRESS_ROUNDS - 1) * milliSecs / 1000.0;
+        long total = 0;
+        for (int i = 0; i < totals.length; i++) {
+            System.out.println(String.format("%12d us/op %s",
+                                             nanos[i] / Math.max(1, totals[i])
+                                             / 1000,
+                                             STRESS_OPERATIONS[i]));
+            total += totals[i];
+        }
+        System.out.println(String.format("%12.1f ops/s total",
+                                         total / seconds));
+
+        if (baseline >= 0 && rss >= 0) {
+            assert rss - baseline <= MAX_RSS_GROWTH
+                : "Stress: resident set size grew from " + (baseline >> 20)
+                + " MB to " + (rss >> 20) + " MB!";
+        }
+    }
+
     /**
      * Tests modular arithmetic and prints the results.
      *
@@ -376,10 +2168,43 @@ public final class TestVMG {
         test_powm(bitLength, milliSecs);
         System.out.println("spowm (simultaneous modular exponentiation)");
         test_spowm(bitLength, milliSecs);
+        System.out.println("backends (JNI and FFM backends agree)");
+        test_backends(bitLength, milliSecs);
+        System.out.println("spowm_acc (streaming simultaneous "
+                           + "exponentiation)");
+        test_spowm_acc(bitLength, milliSecs);
         System.out.println("fpowm (fixed-basis modular exponentiation)");
         test_fpowm(bitLength, milliSecs);
+        System.out.println("fpowm_par (parallel and lazy precomputation)");
+        test_fpowm_par(bitLength, milliSecs);
+        System.out.println("fpowm_budget (tables within memory budget)");
+        test_fpowm_budget(bitLength, milliSecs);
+        System.out.println("fpowm_multi (fixed-basis exponentiation of "
+                           + "several bases)");
+        test_fpowm_multi(bitLength, milliSecs);
+        System.out.println("fpowm_prg (fixed-basis exponentiation with "
+                           + "exponents from seed)");
+        test_fpowm_prg(bitLength, milliSecs);
+        System.out.println("sqrtm (batch modular square roots)");
+        test_sqrtm(bitLength, milliSecs);
+        System.out.println("adaptive (dispatch between BigInteger and "
+                           + "native code)");
+        test_adaptive(bitLength, milliSecs);
+        System.out.println("crt (exponentiation using CRT)");
+        test_crt(bitLength, milliSecs);
+        System.out.println("group (exponentiation in subgroup of known "
+                           + "order)");
+        test_group(bitLength, milliSecs);
         System.out.println("legendre (Legendre symbol)");
         test_legendre(bitLength, milliSecs);
+        System.out.println("vec (routines for packed vectors)");
+        test_vec(bitLength, milliSecs);
+        System.out.println("async (asynchronous facade)");
+        test_async(bitLength, milliSecs);
+        System.out.println("bulk (bulk operations from file to file)");
+        test_bulk(bitLength, milliSecs);
+        System.out.println("monitor (latency histograms and JFR events)");
+        test_monitor(bitLength, milliSecs);
         System.out.println("prime (test random integers for primality)");
         test_millerrabin_prime(bitLength, milliSecs);
         System.out.println("nextprime (find next prime)");
@@ -402,16 +2227,34 @@ public final class TestVMG {
         bitLengths[2] = 3072;
         bitLengths[3] = 4096;
 
-        if (args.length > 0) {
+        // The stress test is requested by "-stress <threads>" before
+        // the bit lengths.
+        int threads = 0;
+        int offset = 0;
+        if (args.length > 1 && "-stress".equals(args[0])) {
+            try {
+                threads = Integer.parseInt(args[1]);
+            } catch (NumberFormatException nfe) {
+                threads = 0;
+            }
+            if (threads <= 0) {
+                System.err.println("Failed to parse the number of threads! ("
+                                   + args[1] + ")");
+                System.exit(1);
+            }
+            offset = 2;
+        }
+
+        if (args.length > offset) {
 
-            bitLengths = new int[args.length];
-            for (int i = 0; i < args.length; i++) {
+            bitLengths = new int[args.length - offset];
+            for (int i = 0; i < bitLengths.length; i++) {
 
                 try {
-                    bitLengths[i] = Integer.parseInt(args[i]);
+                    bitLengths[i] = Integer.parseInt(args[offset + i]);
                 } catch (NumberFormatException nfe) {
                     System.err.println("Failed to parse a bit length! ("
-                                       + args[i] + ")");
+                                       + args[offset + i] + ")");
                     System.exit(1);
                 }
             }
@@ -431,7 +2274,11 @@ public final class TestVMG {
 
         for (int i = 0; i < bitLengths.length; i++) {
 
-            test_vmg(bitLengths[i], DEFAULT_TEST_TIME);
+            if (threads > 0) {
+                test_stress(threads, bitLengths[i], DEFAULT_STRESS_TIME);
+            } else {
+                test_vmg(bitLengths[i], DEFAULT_TEST_TIME);
+            }
         }
         System.out.println("");
     }
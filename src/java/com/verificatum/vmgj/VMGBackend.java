@@ -0,0 +1,128 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+// We use C style to name things in this file, since it should
+// correspond to the native code.
+
+//CHECKSTYLE.OFF: MethodName
+//CHECKSTYLE.OFF: ParameterName
+
+/**
+ * Interface of the native routines used by {@link VMG} and {@link
+ * FpowmTab}. All integers are given in two's complement
+ * representation as in {@link java.math.BigInteger#toByteArray()}
+ * and native pointers are represented by <code>long</code>. This
+ * allows the same routines to be invoked using the Java Native
+ * Interface or the Foreign Function and Memory API.
+ *
+ * @author Douglas Wikstrom
+ */
+@SuppressWarnings("PMD.MethodNamingConventions")
+interface VMGBackend {
+
+    /**
+     * Returns the name of this backend.
+     *
+     * @return Name of this backend.
+     */
+    String name();
+
+    /**
+     * Computes a modular exponentiation.
+     *
+     * @param basis Basis integer.
+     * @param exponent Exponent used to compute power.
+     * @param modulus Modulus.
+     * @return This instance to the power of <code>exponent</code>
+     * modulo <code>modulus</code>.
+     */
+    byte[] powm(byte[] basis, byte[] exponent, byte[] modulus);
+
+    /**
+     * Computes a simultaneous modular exponentiation.
+     *
+     * @param bases Basis integers.
+     * @param exponents Exponent used to compute power.
+     * @param modulus Modulus.
+     * @return Product of the bases to the powers of
+     * <code>exponents</code> modulo <code>modulus</code>.
+     */
+    byte[] spowm(byte[][] bases, byte[][] exponents, byte[] modulus);
+
+    /**
+     * Performs precomputation for the given basis and modulus
+     * assuming the given exponent bit length.
+     *
+     * @param basis Basis elements.
+     * @param modulus Modulus used during modular exponentiation.
+     * @param blockWidth Decides how many distinct generators are used
+     * when translating an exponentiation into a simultaneous
+     * exponentiation.
+     * @param exponentBitlen Expected bit length of exponents.
+     * @param threads Number of threads used for precomputation.
+     * @param lazy Decides if the precomputation is executed in the
+     * background, in which case exponentiations are computed without
+     * the table until it is ready.
+     * @return Native pointer to a precomputed table.
+     */
+    long fpowm_precomp(byte[] basis, byte[] modulus, int blockWidth,
+                       int exponentBitlen, int threads, boolean lazy);
+
+    /**
+     * Computes a fixed-basis modular exponentiation.
+     *
+     * @param tablePtr Native pointer to a precomputed table output by
+     * {@link #fpowm_precomp(byte[], byte[], int, int, int, boolean)}.
+     * @param exponent Exponent given in two's complement.
+     * @return Result of modular exponentiation.
+     */
+    byte[] fpowm(long tablePtr, byte[] exponent);
+
+    /**
+     * Frees the resources allocated by the native object pointed to
+     * by the input.
+     *
+     * @param tablePtr Native pointer to a precomputed table output by
+     * {@link #fpowm_precomp(byte[], byte[], int, int, int, boolean)}.
+     */
+    void fpowm_clear(long tablePtr);
+
+    /**
+     * Returns the Legendre symbol of <code>op</code> modulo
+     * <code>odd_prime</code>.
+     *
+     * @param op An integer.
+     * @param odd_prime An odd prime modulus.
+     * @return Legendre symbol of <code>op</code> modulo
+     * <code>odd_prime</code>.
+     */
+    int legendre(byte[] op, byte[] odd_prime);
+}
+//CHECKSTYLE.ON: MethodName
+//CHECKSTYLE.ON: ParameterName
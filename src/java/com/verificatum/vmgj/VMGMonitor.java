@@ -0,0 +1,270 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Multiplicative Groups library for
+ * Java (VMGJ).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.vmgj;
+
+/**
+ * Monitors the latency of native operations. Monitoring is inactive
+ * by default and then costs a single read of a volatile field per
+ * operation. It is activated by enabling latency histograms using
+ * {@link #enableHistograms(boolean)}, or by starting a Java Flight
+ * Recorder recording, in which case a {@link NativeCallEvent} is
+ * committed for each operation.
+ *
+ * <p>
+ *
+ * The time of an operation is split into the time spent converting
+ * between <code>BigInteger</code> and byte arrays in Java, the time
+ * spent converting between byte arrays and GMP integers in native
+ * code, and the remaining time spent in native code. The native
+ * conversion time is only measured by the JNI backend.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class VMGMonitor {
+
+    /**
+     * Monitored operations.
+     */
+    public enum Operation {
+
+        /**
+         * Modular exponentiation.
+         */
+        POWM,
+
+        /**
+         * Simultaneous modular exponentiation.
+         */
+        SPOWM,
+
+        /**
+         * Fixed-basis modular exponentiation.
+         */
+        FPOWM,
+
+        /**
+         * Precomputation of fixed-basis modular exponentiation.
+         */
+        PRECOMP,
+
+        /**
+         * Legendre symbol.
+         */
+        LEGENDRE,
+
+        /**
+         * Modular square root.
+         */
+        SQRTM,
+
+        /**
+         * Round of the Miller-Rabin test.
+         */
+        MILLERRABIN
+    }
+
+    /**
+     * Avoid accidental instantiation.
+     */
+    private VMGMonitor() {
+    }
+
+    /**
+     * Decides if monitoring is active.
+     */
+    static volatile boolean active;
+
+    /**
+     * Decides if latency histograms are maintained.
+     */
+    private static volatile boolean histograms;
+
+    /**
+     * Decides if a flight recording is running.
+     */
+    private static volatile boolean recording;
+
+    /**
+     * Decides if flight recorder events are supported by the JVM.
+     */
+    private static final boolean JFR;
+
+    /**
+     * Latency histograms of the operations.
+     */
+    private static final LatencyHistogram[] HISTOGRAMS =
+        new LatencyHistogram[Operation.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+
+        // The jdk.jfr module is missing in some runtime images.
+        boolean jfr;
+        try {
+            NativeCallEvent.listen();
+            jfr = true;
+        } catch (final LinkageError | SecurityException e) {
+            jfr = false;
+        }
+        JFR = jfr;
+    }
+
+    /**
+     * Updates the activity of monitoring, including measuring
+     * conversion time in native code.
+     */
+    private static synchronized void update() {
+        final boolean value = histograms || recording;
+        if (value != active) {
+            VMG.timing(value);
+            active = value;
+        }
+    }
+
+    /**
+     * Enables or disables latency histograms.
+     *
+     * @param enabled Decides if histograms are maintained.
+     */
+    public static void enableHistograms(final boolean enabled) {
+        histograms = enabled;
+        update();
+    }
+
+    /**
+     * Informs the monitor if a flight recording is running.
+     *
+     * @param running Decides if a recording is running.
+     */
+    static void setRecording(final boolean running) {
+        recording = running;
+        update();
+    }
+
+    /**
+     * Returns the latency histogram of the given operation. The
+     * latency includes conversions.
+     *
+     * @param operation Operation.
+     * @return Latency histogram.
+     */
+    public static LatencyHistogram histogram(final Operation operation) {
+        return HISTOGRAMS[operation.ordinal()];
+    }
+
+    /**
+     * Resets all latency histograms.
+     */
+    public static void resetHistograms() {
+        for (final LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return Current time in nanoseconds, or zero if monitoring is
+     * inactive.
+     */
+    static long start() {
+        if (active) {
+            VMG.conversion_time();
+            final long start = Math.max(1L, System.nanoTime());
+            if (recording && JFR) {
+                NativeCallEvent.begin(start);
+            }
+            return start;
+        } else {
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns an intermediate time of an operation.
+     *
+     * @param start Output of {@link #start()}.
+     * @return Current time in nanoseconds, or zero if monitoring was
+     * inactive when the operation was started.
+     */
+    static long split(final long start) {
+        return start == 0 ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Records a completed operation. The native code is invoked
+     * between the second and third points in time, and conversions
+     * in Java take place before and after this.
+     *
+     * @param operation Operation.
+     * @param start Output of {@link #start()}, which is the starting
+     * point of the operation.
+     * @param before Point in time before invoking the native code.
+     * @param after Point in time after invoking the native code.
+     * @param modulusBitLength Bit length of modulus.
+     * @param exponentBitLength Bit length of the (largest) exponent.
+     * @param batchSize Number of integers processed.
+     */
+    static void record(final Operation operation,
+                       final long start,
+                       final long before,
+                       final long after,
+                       final int modulusBitLength,
+                       final int exponentBitLength,
+                       final int batchSize) {
+        if (start == 0) {
+            return;
+        }
+        final long end = System.nanoTime();
+
+        if (histograms) {
+            histogram(operation).record(end - start);
+        }
+        if (recording && JFR) {
+            final long nativeConversion = VMG.conversion_time();
+
+            final NativeCallEvent event = NativeCallEvent.started(start);
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            event.operation = operation.name();
+            event.backend = VMG.backend();
+            event.modulusBitLength = modulusBitLength;
+            event.exponentBitLength = exponentBitLength;
+            event.batchSize = batchSize;
+            event.javaConversionTime = before - start + end - after;
+            event.nativeConversionTime = nativeConversion;
+            event.computeTime =
+                Math.max(0L, after - before - nativeConversion);
+            event.commit();
+        }
+    }
+}